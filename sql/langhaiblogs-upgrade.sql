@@ -0,0 +1,47 @@
+/*
+ 浪海博客 数据库升级脚本
+ 已经部署的数据库按照顺序执行 新部署直接使用 langhaiblogs.sql 即可
+*/
+
+-- ----------------------------
+-- 游标分页 按照 (add_time, id) 定位的索引
+-- ----------------------------
+ALTER TABLE `article`
+  ADD INDEX `idx_user_time`(`user_id`, `delete_flag`, `add_time`, `id`) USING BTREE,
+  ADD INDEX `idx_public_time`(`public_show`, `delete_flag`, `add_time`, `id`) USING BTREE,
+  ADD INDEX `idx_label_time`(`label_id`, `delete_flag`, `add_time`, `id`) USING BTREE;
+
+ALTER TABLE `image`
+  ADD INDEX `idx_user_time`(`user_id`, `add_time`, `id`) USING BTREE;
+
+-- ----------------------------
+-- 文章保存时提取的纯文本、摘要、字数、阅读时长以及第一张图片
+-- ----------------------------
+ALTER TABLE `article`
+  ADD COLUMN `plain_text` mediumtext CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL COMMENT '文章纯文本内容' AFTER `html`,
+  ADD COLUMN `excerpt` varchar(512) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '文章摘要' AFTER `plain_text`,
+  ADD COLUMN `word_count` int(11) NULL DEFAULT NULL COMMENT '文章字数' AFTER `excerpt`,
+  ADD COLUMN `reading_time` int(11) NULL DEFAULT NULL COMMENT '阅读时长（分钟）' AFTER `word_count`,
+  ADD COLUMN `first_image` varchar(512) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '文章第一张图片地址' AFTER `reading_time`;
+
+-- ----------------------------
+-- 文章内容压缩存储 原有的utf8文本按原样转换为二进制 程序可以直接读取
+-- 需要在启用 bodyCodec 之前执行
+-- ----------------------------
+ALTER TABLE `article`
+  MODIFY COLUMN `html` longblob NOT NULL COMMENT '文章内容 utf8文本或者压缩数据';
+
+-- ----------------------------
+-- 图片宽高 文章保存时写入img标签 避免页面加载图片时跳动
+-- ----------------------------
+ALTER TABLE `image`
+  ADD COLUMN `width` int(11) NULL DEFAULT NULL COMMENT '图片宽度像素' AFTER `user_id`,
+  ADD COLUMN `height` int(11) NULL DEFAULT NULL COMMENT '图片高度像素' AFTER `width`,
+  ADD INDEX `idx_minio_name`(`minio_name`) USING BTREE;
+
+-- ----------------------------
+-- 图片变体 缩略图、中图、大图以及模糊占位图
+-- ----------------------------
+ALTER TABLE `image`
+  ADD COLUMN `variant` varchar(8) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '已经生成的变体格式 jpg/png' AFTER `height`,
+  ADD COLUMN `placeholder` varchar(2048) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '模糊占位图 data url' AFTER `variant`;
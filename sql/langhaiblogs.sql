@@ -26,12 +26,20 @@ CREATE TABLE `article`  (
   `user_id` bigint(20) NOT NULL COMMENT '用户信息内部id',
   `label_id` bigint(20) NOT NULL COMMENT '文章标签id',
   `title` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '文章标题',
-  `html` longtext CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '文章内容',
+  `html` longblob NOT NULL COMMENT '文章内容 utf8文本或者压缩数据',
+  `plain_text` mediumtext CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL COMMENT '文章纯文本内容',
+  `excerpt` varchar(512) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '文章摘要',
+  `word_count` int(11) NULL DEFAULT NULL COMMENT '文章字数',
+  `reading_time` int(11) NULL DEFAULT NULL COMMENT '阅读时长（分钟）',
+  `first_image` varchar(512) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '文章第一张图片地址',
   `public_show` tinyint(1) NOT NULL COMMENT '是否公开（1表示公开）',
   `delete_flag` tinyint(1) NOT NULL COMMENT '是否逻辑删除（1表示删除）',
   `add_time` datetime NOT NULL COMMENT '添加时间',
   `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
-  PRIMARY KEY (`id`) USING BTREE
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_user_time`(`user_id`, `delete_flag`, `add_time`, `id`) USING BTREE,
+  INDEX `idx_public_time`(`public_show`, `delete_flag`, `add_time`, `id`) USING BTREE,
+  INDEX `idx_label_time`(`label_id`, `delete_flag`, `add_time`, `id`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 23 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = DYNAMIC;
 
 -- ----------------------------
@@ -58,8 +66,14 @@ CREATE TABLE `image`  (
   `minio_name` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT 'minio存储的文件名字',
   `file_size` bigint(20) NOT NULL COMMENT '文件大小字节',
   `user_id` bigint(20) NOT NULL COMMENT '用户id',
+  `width` int(11) NULL DEFAULT NULL COMMENT '图片宽度像素',
+  `height` int(11) NULL DEFAULT NULL COMMENT '图片高度像素',
+  `variant` varchar(8) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '已经生成的变体格式 jpg/png',
+  `placeholder` varchar(2048) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '模糊占位图 data url',
   `add_time` datetime NOT NULL COMMENT '图片添加时间',
-  PRIMARY KEY (`id`) USING BTREE
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_user_time`(`user_id`, `add_time`, `id`) USING BTREE,
+  INDEX `idx_minio_name`(`minio_name`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 51 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
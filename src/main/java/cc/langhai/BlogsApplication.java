@@ -2,6 +2,7 @@ package cc.langhai;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 博客程序启动器
@@ -10,6 +11,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @date 2022-11-19 16:01
  */
 @SpringBootApplication
+@EnableScheduling
 public class BlogsApplication {
     public static void main(String[] args) {
         SpringApplication.run(BlogsApplication.class, args);
@@ -0,0 +1,36 @@
+package cc.langhai.cache;
+
+import cn.hutool.core.util.NumberUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 监听文章缓存失效通知 失效本节点的文章缓存
+ *
+ * @author langhai
+ * @date 2023-01-12 15:52
+ */
+@Component
+public class ArticleCacheEvictListener implements MessageListener {
+
+    @Autowired
+    private ArticleNearCache articleNearCache;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+
+        if(ArticleNearCache.EVICT_ALL.equals(body)){
+            articleNearCache.invalidateAllLocal();
+            return;
+        }
+
+        if(NumberUtil.isLong(body)){
+            articleNearCache.invalidateLocal(Long.valueOf(body));
+        }
+    }
+}
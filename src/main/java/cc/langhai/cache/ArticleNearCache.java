@@ -0,0 +1,273 @@
+package cc.langhai.cache;
+
+import cc.langhai.config.system.SystemConfig;
+import cc.langhai.domain.Article;
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文章本地缓存 缓存 ArticleMapper.getById 的查询结果
+ * 按照数量和文章内容字节数淘汰最久未访问的文章 超过有效时间的文章重新查询
+ * 文章更新或删除时 通过redis发布订阅通知所有节点失效
+ * 失效时记录失效版本 失效之前读取数据库的请求不能再把旧数据放入缓存
+ *
+ * @author langhai
+ * @date 2023-01-12 15:40
+ */
+@Slf4j
+@Component
+public class ArticleNearCache {
+
+    /**
+     * 文章缓存失效通知的redis频道
+     *
+     */
+    public static final String EVICT_CHANNEL = "blogs:article:evict";
+
+    /**
+     * 失效通知内容 清空所有文章
+     *
+     */
+    public static final String EVICT_ALL = "all";
+
+    /**
+     * 每篇文章除了内容以外 估算的固定占用字节
+     *
+     */
+    private static final long ENTRY_OVERHEAD = 512L;
+
+    /**
+     * 失效记录保留的毫秒数 远大于一次数据库查询的时间
+     *
+     */
+    private static final long TOMBSTONE_MILLIS = 60 * 1000L;
+
+    @Autowired
+    private SystemConfig systemConfig;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 按访问顺序排列 最久未访问的在最前面
+     *
+     */
+    private final LinkedHashMap<Long, Entry> articles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 最近失效的文章以及失效时的版本 按照失效时间排列
+     *
+     */
+    private final LinkedHashMap<Long, Tombstone> tombstones = new LinkedHashMap<>();
+
+    /**
+     * 失效版本 每次失效加一
+     *
+     */
+    private long generation = 0L;
+
+    /**
+     * 最近一次清空所有文章时的版本
+     *
+     */
+    private long clearGeneration = 0L;
+
+    /**
+     * 当前缓存文章的总字节数
+     *
+     */
+    private long weight = 0L;
+
+    /**
+     * 获取缓存的文章 返回副本 调用方可以修改热度等字段
+     *
+     * @param id
+     * @return 没有缓存返回null
+     */
+    public Article get(Long id) {
+        Article article;
+        synchronized (this) {
+            Entry entry = articles.get(id);
+            if(entry != null && entry.expireAt <= System.currentTimeMillis()){
+                remove(id);
+                entry = null;
+            }
+            article = entry == null ? null : entry.article;
+        }
+        return article == null ? null : BeanUtil.copyProperties(article, Article.class);
+    }
+
+    /**
+     * 当前的失效版本 读取数据库之前获取 放入缓存时传入
+     *
+     * @return
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * 缓存文章 读取数据库之后文章已经失效的不缓存
+     *
+     * @param article
+     * @param stamp 读取数据库之前的失效版本
+     */
+    public void put(Article article, long stamp) {
+        if(ObjectUtil.isNull(article) || ObjectUtil.isNull(article.getId())){
+            return;
+        }
+
+        Article copy = BeanUtil.copyProperties(article, Article.class);
+        copy.setHeat(null);
+        long entryWeight = weigh(copy);
+        // 单篇文章超过总容量的八分之一 不进行缓存
+        if(entryWeight > systemConfig.getArticleCacheBytes() / 8){
+            return;
+        }
+
+        synchronized (this) {
+            Tombstone tombstone = tombstones.get(copy.getId());
+            if(clearGeneration > stamp || (tombstone != null && tombstone.generation > stamp)){
+                return;
+            }
+
+            long expireAt = System.currentTimeMillis() + systemConfig.getArticleCacheSeconds() * 1000L;
+            Entry old = articles.put(copy.getId(), new Entry(copy, entryWeight, expireAt));
+            if(old != null){
+                weight -= old.weight;
+            }
+            weight += entryWeight;
+
+            Iterator<Map.Entry<Long, Entry>> iterator = articles.entrySet().iterator();
+            while (iterator.hasNext() && (articles.size() > systemConfig.getArticleCacheCount()
+                    || weight > systemConfig.getArticleCacheBytes())) {
+                weight -= iterator.next().getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 失效本节点缓存的文章
+     *
+     * @param id
+     */
+    public synchronized void invalidateLocal(Long id) {
+        generation++;
+        long now = System.currentTimeMillis();
+        Iterator<Tombstone> iterator = tombstones.values().iterator();
+        while (iterator.hasNext() && iterator.next().time < now - TOMBSTONE_MILLIS) {
+            iterator.remove();
+        }
+        tombstones.remove(id);
+        tombstones.put(id, new Tombstone(generation, now));
+        remove(id);
+    }
+
+    /**
+     * 清空本节点缓存的文章
+     *
+     */
+    public synchronized void invalidateAllLocal() {
+        generation++;
+        clearGeneration = generation;
+        tombstones.clear();
+        articles.clear();
+        weight = 0L;
+    }
+
+    private void remove(Long id) {
+        Entry old = articles.remove(id);
+        if(old != null){
+            weight -= old.weight;
+        }
+    }
+
+    /**
+     * 失效所有节点缓存的文章 存在事务时在事务提交之后失效
+     * 避免提交前其他请求又把旧数据放入缓存
+     *
+     * @param id
+     */
+    public void invalidate(Long id) {
+        afterCommit(() -> {
+            invalidateLocal(id);
+            publish(id.toString());
+        });
+    }
+
+    /**
+     * 清空所有节点缓存的文章 用于标签内容等关联数据变化
+     *
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            invalidateAllLocal();
+            publish(EVICT_ALL);
+        });
+    }
+
+    private void afterCommit(Runnable runnable) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        }else {
+            runnable.run();
+        }
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(EVICT_CHANNEL, message);
+        } catch (Exception e) {
+            log.error("文章缓存失效通知发送失败 {}", message, e);
+        }
+    }
+
+    private long weigh(Article article) {
+        // java字符串 每个字符按两个字节计算
+        return ENTRY_OVERHEAD + StrUtil.length(article.getHtml()) * 2L + StrUtil.length(article.getPlainText()) * 2L;
+    }
+
+    private static class Entry {
+
+        private final Article article;
+
+        private final long weight;
+
+        private final long expireAt;
+
+        private Entry(Article article, long weight, long expireAt) {
+            this.article = article;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private static class Tombstone {
+
+        private final long generation;
+
+        private final long time;
+
+        private Tombstone(long generation, long time) {
+            this.generation = generation;
+            this.time = time;
+        }
+    }
+}
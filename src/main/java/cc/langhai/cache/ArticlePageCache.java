@@ -0,0 +1,91 @@
+package cc.langhai.cache;
+
+import cc.langhai.config.system.SystemConfig;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.ZipUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 文章页面缓存 保存匿名访问公开文章时渲染好并且gzip压缩的页面
+ * 页面按照文章id缓存 同时记录页面对应的文章版本（ETag）版本不一致时视为没有缓存
+ * 页面内容保存在堆外内存 不占用java堆
+ * 页面上的浪海值只在渲染时更新 缓存时间较短
+ *
+ * @author langhai
+ * @date 2023-01-17 16:40
+ */
+@Slf4j
+@Component
+public class ArticlePageCache {
+
+    /**
+     * 页面缓存时间 60秒
+     *
+     */
+    private static final long PAGE_TIMEOUT = 60 * 1000L;
+
+    /**
+     * 堆外内存每块的字节数
+     *
+     */
+    private static final int BLOCK_SIZE = 4096;
+
+    @Autowired
+    private SystemConfig systemConfig;
+
+    private OffHeapStore<Long> pages;
+
+    @PostConstruct
+    public void init() {
+        pages = new OffHeapStore<>(systemConfig.getPageCacheBytes(), BLOCK_SIZE, systemConfig.getPageCacheCount(), PAGE_TIMEOUT);
+    }
+
+    /**
+     * 获取缓存的页面 使用结束之后必须 close
+     *
+     * @param id 文章id
+     * @param version 文章版本
+     * @return 没有缓存或者版本不一致返回null
+     */
+    public OffHeapStore<Long>.Entry get(Long id, String version) {
+        return pages.acquire(id, version);
+    }
+
+    /**
+     * 压缩并缓存渲染好的页面
+     *
+     * @param id 文章id
+     * @param version 文章版本
+     * @param html 页面内容
+     * @return gzip压缩之后的页面
+     */
+    public byte[] put(Long id, String version, String html) {
+        byte[] gzip = ZipUtil.gzip(html.getBytes(StandardCharsets.UTF_8));
+        pages.put(id, version, gzip);
+        return gzip;
+    }
+
+    /**
+     * 失效本节点缓存的页面
+     *
+     * @param id
+     */
+    public void invalidateLocal(Long id) {
+        pages.remove(id);
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    public void logStats() {
+        long hits = pages.getHits();
+        long misses = pages.getMisses();
+        log.info("文章页面缓存 命中{}次 未命中{}次 淘汰{}次 页面{}个 堆外内存{}/{}",
+                hits, misses, pages.getEvictions(), pages.getSize(),
+                FileUtil.readableFileSize(pages.getUsedBytes()), FileUtil.readableFileSize(pages.getCapacityBytes()));
+    }
+}
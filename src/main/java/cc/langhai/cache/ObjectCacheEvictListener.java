@@ -0,0 +1,26 @@
+package cc.langhai.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 监听文件缓存失效通知 删除本节点磁盘缓存的文件
+ *
+ * @author langhai
+ * @date 2023-01-20 10:15
+ */
+@Component
+public class ObjectCacheEvictListener implements MessageListener {
+
+    @Autowired
+    private ObjectDiskCache objectDiskCache;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        objectDiskCache.invalidateLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,345 @@
+package cc.langhai.cache;
+
+import cc.langhai.config.constant.ImageConstant;
+import cc.langhai.minio.config.MinioProp;
+import cc.langhai.minio.store.ObjectStore;
+import cc.langhai.minio.util.ObjectInfo;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * minio 文件的本地磁盘缓存
+ * 只缓存内容不会变化的上传文件 按照最近最少使用淘汰 限制总字节数
+ * 先写入临时文件再原子重命名 读取的一方不会看到写了一半的文件
+ * 同一个文件同时未命中时只有一个请求读取minio 其余请求等待结果
+ * 文件信息只保存在内存 应用启动时清空缓存目录下本类使用的子目录
+ * 文件删除时通过redis发布订阅通知所有节点失效
+ *
+ * @author langhai
+ * @date 2023-01-19 15:30
+ */
+@Slf4j
+@Component
+public class ObjectDiskCache {
+
+    /**
+     * 文件缓存失效通知的redis频道 内容为 bucket/文件名
+     *
+     */
+    public static final String EVICT_CHANNEL = "blogs:object:evict";
+
+    /**
+     * 缓存目录下本类使用的子目录 启动时只清空这个目录 不影响配置目录中的其他文件
+     *
+     */
+    private static final String CACHE_DIRECTORY = "blogs-object-cache";
+
+    @Autowired
+    private MinioProp minioProp;
+
+    @Autowired
+    private ObjectStore objectStore;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    private Path directory;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long usedBytes;
+
+    /**
+     * 失效次数 读取minio期间发生过失效时不放入缓存 避免把已经删除的文件放回缓存
+     *
+     */
+    private long invalidations;
+
+    /**
+     * 正在从minio读取的文件
+     *
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> filling = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if(StrUtil.isBlank(minioProp.getCachePath())){
+            return;
+        }
+        directory = Paths.get(minioProp.getCachePath()).toAbsolutePath().resolve(CACHE_DIRECTORY);
+        FileUtil.clean(directory.toFile());
+        FileUtil.mkdir(directory.toFile());
+    }
+
+    /**
+     * 打开缓存的文件 没有缓存时从minio读取并缓存
+     * 文件在查找缓存的同时打开 之后即使被淘汰删除 已经打开的文件仍然可以完整读取
+     *
+     * @param bucketName
+     * @param objectName
+     * @return 没有开启缓存、文件不缓存或者写入磁盘失败时返回null 由调用方直接读取minio 使用完成后需要关闭
+     */
+    public Handle open(String bucketName, String objectName) {
+        if(ObjectUtil.isNull(directory) || !ReUtil.isMatch(ImageConstant.IMMUTABLE_NAME, objectName)){
+            return null;
+        }
+
+        String key = bucketName + "/" + objectName;
+        Handle handle = openCached(key);
+        if(ObjectUtil.isNotNull(handle)){
+            hits.increment();
+            return handle;
+        }
+        misses.increment();
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> running = filling.putIfAbsent(key, future);
+        if(ObjectUtil.isNotNull(running)){
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                throw ExceptionUtil.wrapRuntime(e.getCause());
+            }
+            return openCached(key);
+        }
+
+        try {
+            handle = fill(bucketName, objectName, key);
+            future.complete(null);
+            return handle;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw ExceptionUtil.wrapRuntime(e);
+        } finally {
+            filling.remove(key, future);
+        }
+    }
+
+    /**
+     * 打开已经缓存的文件
+     *
+     * @param key
+     * @return 没有缓存返回null
+     */
+    private synchronized Handle openCached(String key) {
+        Entry entry = entries.get(key);
+        if(ObjectUtil.isNull(entry)){
+            return null;
+        }
+        try {
+            return new Handle(entry.getInfo(), FileChannel.open(entry.getPath(), StandardOpenOption.READ));
+        } catch (IOException e) {
+            log.warn("打开本地磁盘缓存失败 {}", entry.getPath(), e);
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * 从minio读取文件写入缓存目录
+     *
+     * @return 文件过大、写入磁盘失败或者读取期间文件被删除时返回null
+     * @throws IOException 文件不存在
+     */
+    private Handle fill(String bucketName, String objectName, String key) throws IOException {
+        long startInvalidations;
+        synchronized (this) {
+            startInvalidations = invalidations;
+        }
+        ObjectInfo info = objectStore.statObject(bucketName, objectName);
+        if(info.getLength() > minioProp.getCacheMaxObjectBytes()){
+            return null;
+        }
+
+        String hash = SecureUtil.sha1(key);
+        Path target = directory.resolve(hash.substring(0, 2)).resolve(hash);
+        Path temp = null;
+        try (InputStream inputStream = objectStore.getObject(bucketName, objectName)) {
+            Files.createDirectories(target.getParent());
+            temp = Files.createTempFile(target.getParent(), hash, ".tmp");
+            Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("写入本地磁盘缓存失败 {}", key, e);
+            FileUtil.del(temp == null ? null : temp.toFile());
+            return null;
+        }
+
+        synchronized (this) {
+            if(invalidations != startInvalidations){
+                FileUtil.del(target.toFile());
+                return null;
+            }
+            // 同一个文件的缓存路径相同 旧的文件已经被替换 不需要删除
+            Entry previous = entries.put(key, new Entry(target, info));
+            if(ObjectUtil.isNotNull(previous)){
+                usedBytes -= previous.getInfo().getLength();
+            }
+            usedBytes += info.getLength();
+            Handle handle = openCached(key);
+            evict();
+            return handle;
+        }
+    }
+
+    /**
+     * 失效所有节点缓存的文件 文件删除之后调用
+     *
+     * @param bucketName
+     * @param objectName
+     */
+    public void invalidate(String bucketName, String objectName) {
+        String key = bucketName + "/" + objectName;
+        invalidateLocal(key);
+        try {
+            redisTemplate.convertAndSend(EVICT_CHANNEL, key);
+        } catch (Exception e) {
+            log.error("文件缓存失效通知发送失败 {}", key, e);
+        }
+    }
+
+    /**
+     * 失效本节点缓存的文件
+     *
+     * @param key bucket/文件名
+     */
+    public synchronized void invalidateLocal(String key) {
+        invalidations++;
+        remove(key);
+    }
+
+    /**
+     * 超过总字节数时删除最久没有使用的文件
+     *
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes > minioProp.getCacheBytes() && entries.size() > 1 && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            usedBytes -= eldest.getInfo().getLength();
+            delete(eldest);
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if(ObjectUtil.isNotNull(entry)){
+            usedBytes -= entry.getInfo().getLength();
+            delete(entry);
+        }
+    }
+
+    /**
+     * 删除缓存文件 已经打开的文件可以继续读取 读取完成关闭之后操作系统才释放磁盘空间
+     *
+     * @param entry
+     */
+    private void delete(Entry entry) {
+        try {
+            Files.deleteIfExists(entry.getPath());
+        } catch (IOException e) {
+            log.warn("删除本地磁盘缓存失败 {}", entry.getPath(), e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000L)
+    public void logStats() {
+        if(ObjectUtil.isNull(directory)){
+            return;
+        }
+        long used;
+        int size;
+        synchronized (this) {
+            used = usedBytes;
+            size = entries.size();
+        }
+        log.info("本地磁盘缓存 命中{}次 未命中{}次 文件{}个 磁盘{}/{}", hits.sum(), misses.sum(), size,
+                FileUtil.readableFileSize(used), FileUtil.readableFileSize(minioProp.getCacheBytes()));
+    }
+
+    /**
+     * 缓存的文件
+     *
+     */
+    private static class Entry {
+
+        private final Path path;
+
+        private final ObjectInfo info;
+
+        private Entry(Path path, ObjectInfo info) {
+            this.path = path;
+            this.info = info;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public ObjectInfo getInfo() {
+            return info;
+        }
+    }
+
+    /**
+     * 已经打开的缓存文件
+     *
+     */
+    public static class Handle implements Closeable {
+
+        private final ObjectInfo info;
+
+        private final FileChannel channel;
+
+        private Handle(ObjectInfo info, FileChannel channel) {
+            this.info = info;
+            this.channel = channel;
+        }
+
+        public ObjectInfo getInfo() {
+            return info;
+        }
+
+        public FileChannel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public void close() {
+            IoUtil.close(channel);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package cc.langhai.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 堆外字节存储
+ * 启动时申请一整块直接内存 按照固定大小的块分配 数据不占用java堆 不增加GC压力
+ * 按照最近最少使用淘汰 同时限制总字节数、数量和存活时间
+ * 读取中的数据会被固定 淘汰之后等读取结束再回收占用的块
+ *
+ * @author langhai
+ * @date 2023-01-18 10:15
+ */
+public class OffHeapStore<K> {
+
+    private final ByteBuffer slab;
+
+    private final int blockSize;
+
+    /**
+     * 空闲块下标 作为栈使用
+     *
+     */
+    private final int[] freeBlocks;
+
+    private int freeCount;
+
+    private final int maxEntries;
+
+    private final long ttlMillis;
+
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacityBytes 直接内存大小
+     * @param blockSize 每块的字节数
+     * @param maxEntries 最多保存的数量
+     * @param ttlMillis 存活时间 毫秒
+     */
+    public OffHeapStore(long capacityBytes, int blockSize, int maxEntries, long ttlMillis) {
+        int blocks = (int) Math.max(1, Math.min(capacityBytes, Integer.MAX_VALUE) / blockSize);
+        this.slab = ByteBuffer.allocateDirect(blocks * blockSize);
+        this.blockSize = blockSize;
+        this.freeBlocks = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            freeBlocks[i] = blocks - 1 - i;
+        }
+        this.freeCount = blocks;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 获取数据并固定 使用结束之后必须 close
+     *
+     * @param key
+     * @param version 数据版本 不一致视为没有数据
+     * @return 没有数据、已过期或者版本不一致返回null
+     */
+    public synchronized Entry acquire(K key, String version) {
+        Entry entry = entries.get(key);
+        if(entry != null && entry.expireAt < System.currentTimeMillis()){
+            evict(key);
+            entry = null;
+        }
+        if(entry == null || !entry.version.equals(version)){
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        entry.pins++;
+        return entry;
+    }
+
+    /**
+     * 保存数据 空间不足时淘汰最久没有使用的数据
+     *
+     * @param key
+     * @param version
+     * @param data
+     * @return 数据超过总容量时不保存 返回false
+     */
+    public synchronized boolean put(K key, String version, byte[] data) {
+        int need = (data.length + blockSize - 1) / blockSize;
+        if(need > freeBlocks.length){
+            return false;
+        }
+
+        evict(key);
+        Iterator<Map.Entry<K, Entry>> iterator = entries.entrySet().iterator();
+        while ((freeCount < need || entries.size() >= maxEntries) && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            discard(eldest);
+            evictions.increment();
+        }
+        if(freeCount < need){
+            // 剩余的块都被读取中的数据占用
+            return false;
+        }
+
+        int[] blocks = new int[need];
+        for (int i = 0; i < need; i++) {
+            blocks[i] = freeBlocks[--freeCount];
+            int offset = i * blockSize;
+            ByteBuffer target = slab.duplicate();
+            target.position(blocks[i] * blockSize);
+            target.put(data, offset, Math.min(blockSize, data.length - offset));
+        }
+        entries.put(key, new Entry(version, blocks, data.length, System.currentTimeMillis() + ttlMillis));
+        return true;
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param key
+     */
+    public synchronized void remove(K key) {
+        evict(key);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return (long) (freeBlocks.length - freeCount) * blockSize;
+    }
+
+    public long getCapacityBytes() {
+        return (long) freeBlocks.length * blockSize;
+    }
+
+    private void evict(K key) {
+        Entry entry = entries.remove(key);
+        if(entry != null){
+            discard(entry);
+        }
+    }
+
+    /**
+     * 没有被读取时立即回收块 否则等读取结束
+     *
+     */
+    private void discard(Entry entry) {
+        entry.evicted = true;
+        if(entry.pins == 0){
+            free(entry);
+        }
+    }
+
+    private void free(Entry entry) {
+        for (int block : entry.blocks) {
+            freeBlocks[freeCount++] = block;
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.pins--;
+        if(entry.pins == 0 && entry.evicted){
+            free(entry);
+        }
+    }
+
+    /**
+     * 一条数据 固定期间占用的块不会被回收 可以不加锁读取
+     *
+     */
+    public final class Entry implements Closeable {
+
+        private final String version;
+
+        private final int[] blocks;
+
+        private final int length;
+
+        private final long expireAt;
+
+        private int pins;
+
+        private boolean evicted;
+
+        private Entry(String version, int[] blocks, int length, long expireAt) {
+            this.version = version;
+            this.blocks = blocks;
+            this.length = length;
+            this.expireAt = expireAt;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * 按块写出数据 不会一次性复制整条数据到堆内存
+         *
+         * @param out
+         * @throws IOException
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            byte[] chunk = new byte[Math.min(blockSize, length)];
+            for (int i = 0; i < blocks.length; i++) {
+                int n = read(i, chunk);
+                out.write(chunk, 0, n);
+            }
+        }
+
+        /**
+         * 按块读取数据的输入流
+         *
+         * @return
+         */
+        public InputStream openStream() {
+            return new InputStream() {
+
+                private final byte[] chunk = new byte[blockSize];
+
+                private int index = 0;
+
+                private int position = 0;
+
+                private int limit = 0;
+
+                @Override
+                public int read() {
+                    if(!fill()){
+                        return -1;
+                    }
+                    return chunk[position++] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if(len == 0){
+                        return 0;
+                    }
+                    if(!fill()){
+                        return -1;
+                    }
+                    int n = Math.min(len, limit - position);
+                    System.arraycopy(chunk, position, b, off, n);
+                    position += n;
+                    return n;
+                }
+
+                private boolean fill() {
+                    if(position < limit){
+                        return true;
+                    }
+                    if(index >= blocks.length){
+                        return false;
+                    }
+                    limit = Entry.this.read(index++, chunk);
+                    position = 0;
+                    return true;
+                }
+            };
+        }
+
+        private int read(int index, byte[] chunk) {
+            int n = Math.min(blockSize, length - index * blockSize);
+            ByteBuffer source = slab.duplicate();
+            source.position(blocks[index] * blockSize);
+            source.get(chunk, 0, n);
+            return n;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package cc.langhai.cache;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * 分页数据总数缓存
+ * 分页展示的总数只需要近似值 避免每次翻页都执行 COUNT(*)
+ *
+ * @author langhai
+ * @date 2023-01-13 10:30
+ */
+@Component
+public class PageCountCache {
+
+    /**
+     * 总数缓存时间 60秒
+     *
+     */
+    private static final long COUNT_TIMEOUT = 60 * 1000L;
+
+    private final TimedCache<String, Long> counts = CacheUtil.newTimedCache(COUNT_TIMEOUT);
+
+    public PageCountCache() {
+        counts.schedulePrune(COUNT_TIMEOUT);
+    }
+
+    /**
+     * 获取缓存的总数 没有缓存则查询
+     *
+     * @param key
+     * @param loader
+     * @return
+     */
+    public long get(String key, Supplier<Long> loader) {
+        Long count = counts.get(key, false);
+        if(count == null){
+            count = loader.get();
+            counts.put(key, count == null ? 0L : count);
+        }
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * 数据变化时失效总数
+     *
+     * @param key
+     */
+    public void remove(String key) {
+        counts.remove(key);
+    }
+}
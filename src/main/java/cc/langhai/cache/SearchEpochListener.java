@@ -0,0 +1,24 @@
+package cc.langhai.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 监听搜索索引版本变化通知 作废本节点的搜索结果缓存
+ *
+ * @author langhai
+ * @date 2023-01-16 17:25
+ */
+@Component
+public class SearchEpochListener implements MessageListener {
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        searchResultCache.bumpEpochLocal();
+    }
+}
@@ -0,0 +1,134 @@
+package cc.langhai.cache;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 文章搜索结果缓存
+ * 按照 搜索方式 + 规范化之后的搜索条件 + 分页位置 缓存 缓存时记录当前的索引版本
+ * 公开文章有任何变化时索引版本加一 之前缓存的结果全部作废
+ *
+ * @author langhai
+ * @date 2023-01-16 17:10
+ */
+@Slf4j
+@Component
+public class SearchResultCache {
+
+    /**
+     * 索引版本变化通知的频道
+     *
+     */
+    public static final String EPOCH_CHANNEL = "blogs:search:epoch";
+
+    /**
+     * 降级结果的标记 搜索结果map当中该值为true时不缓存
+     * 例如es不可用时使用数据库搜索的结果 es恢复之后不应该继续返回
+     *
+     */
+    public static final String DEGRADED = "degraded";
+
+    /**
+     * 最多缓存的搜索结果数量
+     *
+     */
+    private static final int CAPACITY = 1000;
+
+    /**
+     * 搜索结果缓存时间 5分钟 避免版本通知丢失时一直返回旧数据
+     *
+     */
+    private static final long TIMEOUT = 5 * 60 * 1000L;
+
+    private final LRUCache<String, Entry> results = CacheUtil.newLRUCache(CAPACITY, TIMEOUT);
+
+    /**
+     * 本节点的索引版本
+     *
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 获取缓存的搜索结果 没有缓存或者索引版本已经变化则查询
+     * 返回的对象会被多个请求共享 不要修改 降级的结果不缓存
+     *
+     * @param backend 搜索方式 es / lucene / db
+     * @param searchArticleStr 搜索条件
+     * @param page
+     * @param size
+     * @param cursor
+     * @param loader
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String backend, String searchArticleStr, Integer page, Integer size, String cursor, Supplier<T> loader) {
+        String key = backend + ":" + normalize(searchArticleStr) + ":" + page + ":" + size + ":" + StrUtil.nullToEmpty(cursor);
+        long current = epoch.get();
+
+        Entry entry = results.get(key);
+        if(entry != null && entry.epoch == current){
+            return (T) entry.value;
+        }
+
+        T value = loader.get();
+        if(!(value instanceof Map && Boolean.TRUE.equals(((Map<?, ?>) value).get(DEGRADED)))){
+            results.put(key, new Entry(current, value));
+        }
+        return value;
+    }
+
+    /**
+     * 公开文章变化 所有节点的索引版本加一
+     *
+     */
+    public void bumpEpoch() {
+        bumpEpochLocal();
+        try {
+            redisTemplate.convertAndSend(EPOCH_CHANNEL, String.valueOf(epoch.get()));
+        } catch (Exception e) {
+            log.error("搜索缓存版本通知发送失败", e);
+        }
+    }
+
+    /**
+     * 本节点的索引版本加一
+     *
+     */
+    public void bumpEpochLocal() {
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * 规范化搜索条件 去掉首尾空白 连续空白合并 忽略大小写
+     *
+     * @param searchArticleStr
+     * @return
+     */
+    private String normalize(String searchArticleStr) {
+        return StrUtil.trimToEmpty(searchArticleStr).replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    private static class Entry {
+
+        private final long epoch;
+
+        private final Object value;
+
+        private Entry(long epoch, Object value) {
+            this.epoch = epoch;
+            this.value = value;
+        }
+    }
+}
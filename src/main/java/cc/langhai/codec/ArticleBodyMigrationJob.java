@@ -0,0 +1,142 @@
+package cc.langhai.codec;
+
+import cc.langhai.cache.ArticleNearCache;
+import cc.langhai.config.system.SystemConfig;
+import cc.langhai.domain.Article;
+import cc.langhai.mapper.ArticleMapper;
+import cc.langhai.mq.config.MqConstants;
+import cc.langhai.utils.ArticleTextUtil;
+import cn.hutool.core.collection.CollectionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 历史文章迁移任务
+ * 配置 langhai.blogs.bodyMigration 为 true 时 应用启动后在后台分批压缩未压缩的文章内容
+ * 并为没有纯文本的历史文章补齐纯文本、摘要、字数、阅读时长以及第一张图片
+ *
+ * @author langhai
+ * @date 2023-01-14 15:48
+ */
+@Slf4j
+@Component
+public class ArticleBodyMigrationJob {
+
+    /**
+     * 每批处理的文章数量
+     *
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * 每批之间的间隔 毫秒 避免影响正常访问
+     *
+     */
+    private static final long BATCH_INTERVAL = 200L;
+
+    @Autowired
+    private SystemConfig systemConfig;
+
+    @Autowired
+    private ArticleMapper articleMapper;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ArticleNearCache articleNearCache;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if(!Boolean.TRUE.equals(systemConfig.getBodyMigration())){
+            return;
+        }
+
+        Thread thread = new Thread(this::migrate, "article-body-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void migrate() {
+        if(BodyCodecs.enabled()){
+            compress();
+        }
+        backfillText();
+    }
+
+    /**
+     * 按照id顺序分批读取未压缩的文章内容 使用当前编解码器重新写入
+     *
+     */
+    private void compress() {
+        long lastId = 0L;
+        long count = 0L;
+        try {
+            while (true) {
+                List<Article> articleList = articleMapper.listUncompressedBody(lastId, BodyCodecs.MIN_ENCODE_LENGTH, BATCH_SIZE);
+                if(CollectionUtil.isEmpty(articleList)){
+                    break;
+                }
+
+                for (Article article : articleList) {
+                    // 读取之后作者编辑过的文章已经按照新内容写入 不再覆盖
+                    if(articleMapper.updateBody(article.getId(), article.getHtml(), article.getUpdateTime()) > 0){
+                        count++;
+                    }
+                    lastId = article.getId();
+                }
+                TimeUnit.MILLISECONDS.sleep(BATCH_INTERVAL);
+            }
+            log.info("文章内容压缩完成 共处理{}篇文章", count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("文章内容压缩失败 最后处理的文章id：{}", lastId, e);
+        }
+    }
+
+    /**
+     * 按照id顺序分批为没有纯文本的历史文章提取纯文本
+     * 公开的文章发送消息 重新写入索引库 正文才能被搜索到
+     *
+     */
+    private void backfillText() {
+        long lastId = 0L;
+        long count = 0L;
+        try {
+            while (true) {
+                List<Article> articleList = articleMapper.listMissingText(lastId, BATCH_SIZE);
+                if(CollectionUtil.isEmpty(articleList)){
+                    break;
+                }
+
+                for (Article article : articleList) {
+                    lastId = article.getId();
+                    ArticleTextUtil.enrich(article);
+                    if(articleMapper.updateText(article, article.getUpdateTime()) == 0){
+                        continue;
+                    }
+                    count++;
+                    // 各节点本地缓存的文章没有摘要、字数和阅读时长
+                    articleNearCache.invalidate(article.getId());
+                    if(Integer.valueOf(1).equals(article.getPublicShow())){
+                        rabbitTemplate.convertAndSend(MqConstants.BLOGS_EXCHANGE, MqConstants.BLOGS_INSERT_KEY, article.getId());
+                    }
+                }
+                TimeUnit.MILLISECONDS.sleep(BATCH_INTERVAL);
+            }
+            log.info("文章纯文本补齐完成 共处理{}篇文章", count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("文章纯文本补齐失败 最后处理的文章id：{}", lastId, e);
+        }
+    }
+}
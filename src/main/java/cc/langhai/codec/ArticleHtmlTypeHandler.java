@@ -0,0 +1,43 @@
+package cc.langhai.codec;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 文章内容类型处理器
+ * 写入时按照当前编解码器压缩 读取时按照格式标记解压
+ *
+ * @author langhai
+ * @date 2023-01-14 15:35
+ */
+@MappedTypes(String.class)
+@MappedJdbcTypes(JdbcType.LONGVARBINARY)
+public class ArticleHtmlTypeHandler extends BaseTypeHandler<String> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType) throws SQLException {
+        ps.setBytes(i, BodyCodecs.encode(parameter));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return BodyCodecs.decode(rs.getBytes(columnName));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return BodyCodecs.decode(rs.getBytes(columnIndex));
+    }
+
+    @Override
+    public String getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return BodyCodecs.decode(cs.getBytes(columnIndex));
+    }
+}
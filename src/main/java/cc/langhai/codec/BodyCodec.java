@@ -0,0 +1,41 @@
+package cc.langhai.codec;
+
+/**
+ * 文章内容编解码器接口
+ * 新增压缩算法时实现此接口 并注册到 BodyCodecs
+ *
+ * @author langhai
+ * @date 2023-01-14 15:10
+ */
+public interface BodyCodec {
+
+    /**
+     * 编解码器名称 用于配置文件选择
+     *
+     * @return
+     */
+    String name();
+
+    /**
+     * 格式标记 存储时写在标记字节 0x00 之后 每个编解码器不能重复
+     *
+     * @return
+     */
+    byte marker();
+
+    /**
+     * 压缩
+     *
+     * @param data
+     * @return
+     */
+    byte[] encode(byte[] data);
+
+    /**
+     * 解压
+     *
+     * @param data 不包含格式标记的数据
+     * @return
+     */
+    byte[] decode(byte[] data);
+}
@@ -0,0 +1,25 @@
+package cc.langhai.codec;
+
+import cc.langhai.config.system.SystemConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 根据配置选择保存文章时使用的编解码器
+ *
+ * @author langhai
+ * @date 2023-01-14 15:40
+ */
+@Component
+public class BodyCodecInitializer {
+
+    @Autowired
+    private SystemConfig systemConfig;
+
+    @PostConstruct
+    public void init() {
+        BodyCodecs.use(systemConfig.getBodyCodec());
+    }
+}
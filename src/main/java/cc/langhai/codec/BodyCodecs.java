@@ -0,0 +1,162 @@
+package cc.langhai.codec;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文章内容编解码器注册表
+ * 压缩后的格式为 0x00 + 编解码器标记 + 压缩数据
+ * 压缩后没有变小的内容格式为 0x00 + 'S' + 原文 标记为已经处理 历史文章压缩任务不再重复处理
+ * html文本不会以 0x00 开头 没有格式标记的数据按照未压缩的utf8文本读取 兼容历史数据
+ *
+ * @author langhai
+ * @date 2023-01-14 15:22
+ */
+public class BodyCodecs {
+
+    /**
+     * 压缩数据的第一个字节
+     *
+     */
+    public static final byte FORMAT_MARKER = 0x00;
+
+    /**
+     * 不压缩的编解码器名称
+     *
+     */
+    public static final String NONE = "none";
+
+    /**
+     * 压缩后没有变小 存储原文的格式标记
+     *
+     */
+    public static final byte STORED_MARKER = 'S';
+
+    /**
+     * 小于此字节数的内容不压缩 也不加格式标记
+     *
+     */
+    public static final int MIN_ENCODE_LENGTH = 512;
+
+    private static final Map<String, BodyCodec> CODEC_BY_NAME = new ConcurrentHashMap<>();
+
+    private static final Map<Byte, BodyCodec> CODEC_BY_MARKER = new ConcurrentHashMap<>();
+
+    /**
+     * 保存文章时使用的编解码器 为null时不压缩
+     *
+     */
+    private static volatile BodyCodec current;
+
+    static {
+        register(new DeflateBodyCodec());
+    }
+
+    /**
+     * 注册编解码器
+     *
+     * @param codec
+     */
+    public static void register(BodyCodec codec) {
+        if(codec.marker() == STORED_MARKER){
+            throw new IllegalArgumentException("编解码器格式标记不能使用：" + (char) STORED_MARKER);
+        }
+        CODEC_BY_NAME.put(codec.name(), codec);
+        CODEC_BY_MARKER.put(codec.marker(), codec);
+    }
+
+    /**
+     * 设置保存文章时使用的编解码器
+     *
+     * @param name 编解码器名称 none 表示不压缩
+     */
+    public static void use(String name) {
+        if(StrUtil.isBlank(name) || NONE.equals(name)){
+            current = null;
+            return;
+        }
+
+        BodyCodec codec = CODEC_BY_NAME.get(name);
+        if(codec == null){
+            throw new IllegalArgumentException("未知的文章内容编解码器：" + name);
+        }
+        current = codec;
+    }
+
+    /**
+     * 当前是否启用压缩
+     *
+     * @return
+     */
+    public static boolean enabled() {
+        return current != null;
+    }
+
+    /**
+     * 编码文章内容
+     *
+     * @param html
+     * @return
+     */
+    public static byte[] encode(String html) {
+        byte[] data = html.getBytes(StandardCharsets.UTF_8);
+        BodyCodec codec = current;
+        if(codec == null || data.length < MIN_ENCODE_LENGTH){
+            return data;
+        }
+
+        byte[] encoded = codec.encode(data);
+        // 压缩后没有变小 存储原文 加上格式标记
+        if(encoded.length >= data.length){
+            return withMarker(STORED_MARKER, data);
+        }
+        return withMarker(codec.marker(), encoded);
+    }
+
+    /**
+     * 解码文章内容
+     *
+     * @param data
+     * @return
+     */
+    public static String decode(byte[] data) {
+        if(data == null){
+            return null;
+        }
+
+        if(!isEncoded(data)){
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        if(data[1] == STORED_MARKER){
+            return new String(data, 2, data.length - 2, StandardCharsets.UTF_8);
+        }
+        BodyCodec codec = CODEC_BY_MARKER.get(data[1]);
+        if(codec == null){
+            throw new IllegalStateException("未知的文章内容格式标记：" + data[1]);
+        }
+        return new String(codec.decode(Arrays.copyOfRange(data, 2, data.length)), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] withMarker(byte marker, byte[] data) {
+        byte[] result = new byte[data.length + 2];
+        result[0] = FORMAT_MARKER;
+        result[1] = marker;
+        System.arraycopy(data, 0, result, 2, data.length);
+        return result;
+    }
+
+    /**
+     * 数据是否带有格式标记
+     *
+     * @param data
+     * @return
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == FORMAT_MARKER;
+    }
+}
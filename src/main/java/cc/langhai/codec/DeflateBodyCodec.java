@@ -0,0 +1,67 @@
+package cc.langhai.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * deflate 编解码器 使用jdk自带的压缩算法
+ *
+ * @author langhai
+ * @date 2023-01-14 15:16
+ */
+public class DeflateBodyCodec implements BodyCodec {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public byte marker() {
+        return 'D';
+    }
+
+    @Override
+    public byte[] encode(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(data.length / 4, 64));
+            byte[] buf = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buf);
+                outputStream.write(buf, 0, length);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decode(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length * 4);
+            byte[] buf = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buf);
+                if(length == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    throw new IllegalStateException("文章内容数据不完整");
+                }
+                outputStream.write(buf, 0, length);
+            }
+            return outputStream.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("文章内容解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package cc.langhai.config.constant;
 
 import lombok.Data;
 
+import java.util.regex.Pattern;
+
 /**
  * 图片常量类
  *
@@ -18,4 +20,40 @@ public class ImageConstant {
      */
     public static final Long IMAGE_COUNT_ALL = 52428800L;
 
+    /**
+     * 图片存储桶
+     *
+     */
+    public static final String IMAGE_BUCKET = "product";
+
+    /**
+     * 上传生成的文件名以及变体文件名 存储桶名称_时间戳[_变体名].后缀名 内容不会变化
+     *
+     */
+    public static final Pattern IMMUTABLE_NAME = Pattern.compile("^[a-z]+_\\d{13}(_(thumb|medium|large))?\\.[A-Za-z0-9]+$");
+
+    /**
+     * 生成变体的图片最多像素数 超过时不生成变体
+     *
+     */
+    public static final long IMAGE_VARIANT_MAX_PIXELS = 40_000_000L;
+
+    /**
+     * 变体jpg压缩质量
+     *
+     */
+    public static final float IMAGE_VARIANT_QUALITY = 0.82f;
+
+    /**
+     * 占位图宽度
+     *
+     */
+    public static final int IMAGE_PLACEHOLDER_WIDTH = 16;
+
+    /**
+     * 占位图jpg压缩质量
+     *
+     */
+    public static final float IMAGE_PLACEHOLDER_QUALITY = 0.5f;
+
 }
@@ -1,9 +1,19 @@
 package cc.langhai.config.redis;
 
+import cc.langhai.cache.ArticleCacheEvictListener;
+import cc.langhai.cache.ArticleNearCache;
+import cc.langhai.cache.ObjectCacheEvictListener;
+import cc.langhai.cache.ObjectDiskCache;
+import cc.langhai.cache.SearchEpochListener;
+import cc.langhai.cache.SearchResultCache;
+import cc.langhai.suggest.SuggestEventListener;
+import cc.langhai.suggest.SuggestIndex;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -30,6 +40,28 @@ public class MyRedisConfig {
         return redisTemplate;
     }
  
+    /**
+     * redis发布订阅监听容器 用于接收文章缓存失效通知
+     *
+     * @param redisConnectionFactory
+     * @param articleCacheEvictListener
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       ArticleCacheEvictListener articleCacheEvictListener,
+                                                                       SearchEpochListener searchEpochListener,
+                                                                       SuggestEventListener suggestEventListener,
+                                                                       ObjectCacheEvictListener objectCacheEvictListener){
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(articleCacheEvictListener, new ChannelTopic(ArticleNearCache.EVICT_CHANNEL));
+        container.addMessageListener(searchEpochListener, new ChannelTopic(SearchResultCache.EPOCH_CHANNEL));
+        container.addMessageListener(suggestEventListener, new ChannelTopic(SuggestIndex.SUGGEST_CHANNEL));
+        container.addMessageListener(objectCacheEvictListener, new ChannelTopic(ObjectDiskCache.EVICT_CHANNEL));
+        return container;
+    }
+
     private RedisSerializer<String> keySerializer(){
         return new StringRedisSerializer();
     }
@@ -38,4 +38,95 @@ public class SystemConfig {
      *
      */
     private Integer registerDayUserCount;
+
+    /**
+     * 文章本地缓存最多缓存的文章数量
+     *
+     */
+    private Integer articleCacheCount = 1000;
+
+    /**
+     * 文章本地缓存最多占用的字节数 按文章内容计算 默认64M
+     *
+     */
+    private Long articleCacheBytes = 64L * 1024 * 1024;
+
+    /**
+     * 文章本地缓存的有效时间 秒 失效通知丢失时最多返回这么久的旧数据
+     *
+     */
+    private Integer articleCacheSeconds = 600;
+
+    /**
+     * 保存文章内容使用的编解码器 deflate / none
+     * 默认不压缩 已经部署的数据库执行升级脚本把 html 改为 longblob 之后才能使用 deflate
+     *
+     */
+    private String bodyCodec = "none";
+
+    /**
+     * 是否在启动后压缩历史文章内容 并补齐历史文章的纯文本
+     *
+     */
+    private Boolean bodyMigration = false;
+
+    /**
+     * 同步es时每批最多处理的消息数量
+     *
+     */
+    private Integer esBatchSize = 100;
+
+    /**
+     * 同步es时等待凑批的时间 毫秒 超过该时间没有新消息就处理当前批次
+     *
+     */
+    private Long esBatchWaitMillis = 500L;
+
+    /**
+     * 同步es失败后重试的等待时间 毫秒 第n次重试等待n倍
+     *
+     */
+    private Long esRetryDelayMillis = 30000L;
+
+    /**
+     * 同步es失败后最多重试的次数 超过后转入死信队列
+     *
+     */
+    private Integer esRetryTimes = 5;
+
+    /**
+     * 文章页面缓存最多缓存的页面数量
+     *
+     */
+    private Integer pageCacheCount = 500;
+
+    /**
+     * 文章页面缓存使用的堆外内存字节数 默认64M
+     *
+     */
+    private Long pageCacheBytes = 64L * 1024 * 1024;
+
+    /**
+     * 页面模板版本 参与文章页面ETag计算 为空时使用构建时间
+     *
+     */
+    private String templateVersion;
+
+    /**
+     * 长文章分段 每段最少的字符数 小于等于0时不分段
+     *
+     */
+    private Integer articleSectionChars = 20000;
+
+    /**
+     * 文章页面直接输出的段数 其余段落滚动到附近时再加载 小于等于0时全部直接输出
+     *
+     */
+    private Integer articleInlineSections = 2;
+
+    /**
+     * 渲染文章页面时的响应缓冲区字节数 缓冲区写满即发送给浏览器
+     *
+     */
+    private Integer articleFlushBytes = 4096;
 }
@@ -1,6 +1,10 @@
 package cc.langhai.controller.article;
 
+import cc.langhai.cache.ArticlePageCache;
+import cc.langhai.cache.OffHeapStore;
+import cc.langhai.config.system.SystemConfig;
 import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
 import cc.langhai.domain.Label;
 import cc.langhai.domain.User;
 import cc.langhai.response.ArticleReturnCode;
@@ -8,24 +12,41 @@ import cc.langhai.response.ResultResponse;
 import cc.langhai.service.ArticleService;
 import cc.langhai.service.LabelService;
 import cc.langhai.service.UserService;
+import cc.langhai.suggest.SuggestIndex;
+import cc.langhai.utils.ArticleSectionUtil;
+import cc.langhai.utils.CursorPage;
 import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson.JSONObject;
-import com.github.pagehelper.PageHelper;
-import com.github.pagehelper.PageInfo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.info.BuildProperties;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 /**
  * 文章控制器
@@ -37,6 +58,19 @@ import java.util.stream.Collectors;
 @RequestMapping("/article")
 public class ArticleController {
 
+    /**
+     * 应用启动时间 没有配置页面模板版本并且没有构建信息时使用 例如在开发工具中直接运行
+     *
+     */
+    private static final String STARTUP_VERSION = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * 打包时生成的构建信息 同一个包部署的所有节点构建时间相同 ETag也相同
+     *
+     */
+    @Autowired(required = false)
+    private BuildProperties buildProperties;
+
     @Autowired
     private LabelService labelService;
 
@@ -46,6 +80,18 @@ public class ArticleController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private SuggestIndex suggestIndex;
+
+    @Autowired
+    private SystemConfig systemConfig;
+
+    @Autowired
+    private ArticlePageCache articlePageCache;
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
     /**
      * 跳转到 文章 新发布页面
      *
@@ -91,16 +137,18 @@ public class ArticleController {
     @GetMapping("/articleListPage")
     public String articleListPage(HttpSession session, Model model,
                                   @RequestParam(defaultValue = "1") Integer curr,
-                                  @RequestParam(defaultValue = "10") Integer limitArticle){
-        // 开启分页助手
-        PageHelper.startPage(curr, limitArticle);
-
-        List<Article> allArticle = articleService.getAllArticle();
-        List<Article> articleHeat = articleService.getArticleHeat(allArticle);
+                                  @RequestParam(defaultValue = "10") Integer limitArticle,
+                                  String cursor){
+        CursorPage<ArticleSummary> cursorPage = articleService.getAllArticle(curr, limitArticle, cursor);
+        List<ArticleSummary> articleHeat = articleService.getArticleHeat(cursorPage.getList());
 
 
         model.addAttribute("allArticle", articleHeat);
         model.addAttribute("curr", curr);
+        model.addAttribute("limitArticle", limitArticle);
+        model.addAttribute("count", cursorPage.getTotal());
+        model.addAttribute("nextCursor", cursorPage.getNextCursor());
+        model.addAttribute("prevCursor", cursorPage.getPrevCursor());
         return "blogs/article/articleList";
     }
 
@@ -113,20 +161,20 @@ public class ArticleController {
     @ResponseBody
     public JSONObject articleList(HttpSession session, Model model,
                                   @RequestParam(defaultValue = "1") Integer curr,
-                                  @RequestParam(defaultValue = "10") Integer limitArticle){
+                                  @RequestParam(defaultValue = "10") Integer limitArticle,
+                                  String cursor){
         JSONObject jsonObject = new JSONObject();
 
-        PageHelper.startPage(curr, limitArticle);
-
-        List<Article> allArticle = articleService.getAllArticle();
+        CursorPage<ArticleSummary> cursorPage = articleService.getAllArticle(curr, limitArticle, cursor);
 
         jsonObject.put("code", 0);
 
-        jsonObject.put("data", allArticle);
+        jsonObject.put("data", cursorPage.getList());
 
-        PageInfo<Article> pageInfo = new PageInfo<>(allArticle);
+        jsonObject.put("count", cursorPage.getTotal());
 
-        jsonObject.put("count", pageInfo.getTotal());
+        jsonObject.put("nextCursor", cursorPage.getNextCursor());
+        jsonObject.put("prevCursor", cursorPage.getPrevCursor());
         return jsonObject;
     }
 
@@ -141,7 +189,8 @@ public class ArticleController {
      *                          不匹配 页面 langhaibk/index
      */
     @GetMapping("/articleShow")
-    public String articleShow(Long id, Model model, HttpSession session){
+    public String articleShow(Long id, Model model, HttpSession session, WebRequest webRequest,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
         Article article = articleService.getById(id);
         if(ObjectUtil.isNull(article)){
             return "blogs/user/login";
@@ -150,7 +199,32 @@ public class ArticleController {
 
         boolean judgeShow = articleService.judgeShow(session, article);
         if(judgeShow){
-            model.addAttribute("article", articleHeat);
+            // 文章没有变化 浏览器使用本地缓存 不再渲染页面
+            if(checkNotModified(article, webRequest, response)){
+                return null;
+            }
+            Map<String, Object> variables = articleVariables(articleHeat);
+
+            // 匿名访问公开文章 直接返回缓存的页面
+            boolean publicShow = Integer.valueOf(1).equals(article.getPublicShow());
+            if(publicShow && ObjectUtil.isNull(session.getAttribute("user"))){
+                String etag = articleETag(article);
+                try (OffHeapStore<Long>.Entry page = articlePageCache.get(id, etag)) {
+                    if(ObjectUtil.isNotNull(page)){
+                        writePage(page.length(), page::writeTo, page.openStream(), request, response);
+                        return null;
+                    }
+                }
+
+                Context context = new Context(LocaleContextHolder.getLocale(), variables);
+                byte[] gzip = articlePageCache.put(id, etag, templateEngine.process("blogs/article/articleShow", context));
+                writePage(gzip.length, out -> out.write(gzip), new ByteArrayInputStream(gzip), request, response);
+                return null;
+            }
+
+            // 缓冲区较小 页面头部、标题等内容写满缓冲区后立即发送 正文分段边渲染边输出
+            response.setBufferSize(systemConfig.getArticleFlushBytes());
+            model.addAllAttributes(variables);
             return "blogs/article/articleShow";
         }
 
@@ -158,6 +232,34 @@ public class ArticleController {
         return "blogs/user/login";
     }
 
+    /**
+     * 长文章分段加载 返回文章某一段的html
+     *
+     * @param id 文章id
+     * @param index 段落下标 从0开始
+     * @return 文章不存在、没有权限或者下标超出范围时返回404
+     */
+    @GetMapping(value = "/articleSection", produces = "text/html;charset=UTF-8")
+    @ResponseBody
+    public String articleSection(Long id, Integer index, HttpSession session, WebRequest webRequest,
+                                 HttpServletResponse response){
+        Article article = ObjectUtil.isNull(id) ? null : articleService.getById(id);
+        if(ObjectUtil.isNull(article) || ObjectUtil.isNull(index) || !articleService.judgeShow(session, article)){
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        if(checkNotModified(article, webRequest, response)){
+            return null;
+        }
+
+        List<String> sections = ArticleSectionUtil.split(article.getHtml(), systemConfig.getArticleSectionChars());
+        if(index < 0 || index >= sections.size()){
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        return sections.get(index);
+    }
+
     /**
      * 跳转到文章编辑页面
      *
@@ -224,13 +326,16 @@ public class ArticleController {
     public String articleSearchPage(HttpSession session, Model model,
                                   @RequestParam(defaultValue = "1") Integer page,
                                   @RequestParam(defaultValue = "10") Integer size,
+                                    String cursor,
                                     String searchArticleStr){
-        PageInfo<Article> pageInfo = articleService.search(page, size, searchArticleStr);
+        CursorPage<ArticleSummary> cursorPage = articleService.search(page, size, cursor, searchArticleStr);
 
-        model.addAttribute("list", articleService.getArticleHeat(pageInfo.getList()));
+        model.addAttribute("list", articleService.getArticleHeat(cursorPage.getList()));
         model.addAttribute("page", page);
         model.addAttribute("size", size);
-        model.addAttribute("pages", pageInfo.getPages());
+        model.addAttribute("pages", cursorPage.getPages());
+        model.addAttribute("nextCursor", cursorPage.getNextCursor());
+        model.addAttribute("prevCursor", cursorPage.getPrevCursor());
         model.addAttribute("search", searchArticleStr);
         return "blogs/article/articleSearch";
     }
@@ -247,16 +352,153 @@ public class ArticleController {
     public String articleSearchESPage(HttpSession session, Model model,
                                     @RequestParam(defaultValue = "1") Integer page,
                                     @RequestParam(defaultValue = "10") Integer size,
-                                    String searchArticleStr) throws IOException {
-        HashMap<String, Object> hashMap = articleService.searchES(page, size, searchArticleStr);
+                                    String cursor, String searchArticleStr) throws IOException {
+        HashMap<String, Object> hashMap = articleService.searchES(page, size, cursor, searchArticleStr);
 
-        List<Article> list = (List<Article>) hashMap.get("list");
+        List<ArticleSummary> list = (List<ArticleSummary>) hashMap.get("list");
         Long pages = (Long) hashMap.get("pages");
         model.addAttribute("list", articleService.getArticleHeat(list));
         model.addAttribute("page", page);
         model.addAttribute("size", size);
         model.addAttribute("pages", pages);
+        model.addAttribute("nextCursor", hashMap.get("nextCursor"));
         model.addAttribute("search", searchArticleStr);
         return "blogs/article/articleSearchES";
     }
+
+    /**
+     * 场景：搜索框输入时提示公开文章的标题和标签 支持拼音全拼和首字母
+     *
+     * @param prefix 用户输入的内容
+     * @param size   每类提示的最大数量
+     * @return titles 文章标题 labels 标签
+     */
+    @GetMapping("/suggest")
+    @ResponseBody
+    public ResultResponse suggest(String prefix, @RequestParam(defaultValue = "8") Integer size){
+        size = Math.max(1, Math.min(size, 20));
+
+        HashMap<String, Object> hashMap = new HashMap<>();
+        hashMap.put("titles", toSuggestList(suggestIndex.suggestTitle(prefix, size)));
+        hashMap.put("labels", toSuggestList(suggestIndex.suggestLabel(prefix, size)));
+        return ResultResponse.success(ArticleReturnCode.ARTICLE_SUGGEST_OK_00007, hashMap);
+    }
+
+    private List<HashMap<String, Object>> toSuggestList(Map<Long, String> suggestions) {
+        List<HashMap<String, Object>> list = new ArrayList<>();
+        for (Map.Entry<Long, String> entry : suggestions.entrySet()) {
+            HashMap<String, Object> item = new HashMap<>();
+            item.put("id", entry.getKey());
+            item.put("text", entry.getValue());
+            list.add(item);
+        }
+        return list;
+    }
+
+    /**
+     * 设置文章页面的缓存头 并且判断浏览器缓存的版本是否仍然有效
+     * 公开文章可以被共享缓存 不公开的文章只允许浏览器缓存 每次使用前都需要验证
+     *
+     * @param article
+     * @param webRequest
+     * @param response
+     * @return true 文章没有变化 已经返回304
+     */
+    private boolean checkNotModified(Article article, WebRequest webRequest, HttpServletResponse response) {
+        boolean publicShow = Integer.valueOf(1).equals(article.getPublicShow());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, publicShow ? "public, no-cache" : "private, no-cache");
+        if(!publicShow){
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.COOKIE);
+        }
+        return webRequest.checkNotModified(articleETag(article), articleLastModified(article));
+    }
+
+    /**
+     * 文章页面的模板变量 长文章只直接输出前几段 其余段落页面上按需加载
+     *
+     * @param article
+     * @return
+     */
+    private Map<String, Object> articleVariables(Article article) {
+        List<String> sections = ArticleSectionUtil.split(article.getHtml(), systemConfig.getArticleSectionChars());
+        int sectionCount = sections.size();
+        int inline = systemConfig.getArticleInlineSections();
+        if(inline > 0 && sectionCount > inline){
+            sections = sections.subList(0, inline);
+        }
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("article", article);
+        variables.put("sections", sections);
+        variables.put("sectionCount", sectionCount);
+        return variables;
+    }
+
+    /**
+     * 文章页面的ETag 文章内容、标签、作者或者页面模板变化时改变
+     * 浪海值不参与计算 304时页面上的浪海值可能不是最新的
+     *
+     * @param article
+     * @return
+     */
+    private String articleETag(Article article) {
+        String templateVersion = StrUtil.blankToDefault(systemConfig.getTemplateVersion(), buildVersion());
+        int related = Objects.hash(article.getTitle(), article.getLabelContent(), article.getAuthor(), article.getPublicShow());
+        return "W/\"" + article.getId() + "-" + articleLastModified(article) + "-"
+                + Integer.toHexString(related) + "-" + templateVersion + "\"";
+    }
+
+    /**
+     * 没有配置页面模板版本时使用构建时间 没有构建信息时使用应用启动时间
+     *
+     * @return
+     */
+    private String buildVersion() {
+        if(ObjectUtil.isNull(buildProperties) || ObjectUtil.isNull(buildProperties.getTime())){
+            return STARTUP_VERSION;
+        }
+        return Long.toString(buildProperties.getTime().toEpochMilli(), 36);
+    }
+
+    /**
+     * 文章最后修改时间 没有修改过使用发布时间
+     *
+     * @param article
+     * @return
+     */
+    private long articleLastModified(Article article) {
+        Date time = ObjectUtil.isNotNull(article.getUpdateTime()) ? article.getUpdateTime() : article.getAddTime();
+        return ObjectUtil.isNull(time) ? -1L : time.getTime() / 1000 * 1000;
+    }
+
+    /**
+     * 输出缓存的页面 客户端支持gzip时直接输出压缩内容 否则边解压边输出
+     *
+     * @param gzipLength 压缩内容长度
+     * @param gzipWriter 输出压缩内容
+     * @param gzipStream 压缩内容输入流
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    private void writePage(int gzipLength, GzipWriter gzipWriter, InputStream gzipStream,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/html;charset=UTF-8");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if(StrUtil.containsIgnoreCase(acceptEncoding, "gzip")){
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.setContentLength(gzipLength);
+            gzipWriter.writeTo(response.getOutputStream());
+        }else {
+            IoUtil.copy(new GZIPInputStream(gzipStream), response.getOutputStream());
+        }
+    }
+
+    @FunctionalInterface
+    private interface GzipWriter {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
 }
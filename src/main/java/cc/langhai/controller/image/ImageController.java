@@ -3,14 +3,16 @@ package cc.langhai.controller.image;
 import cc.langhai.domain.Article;
 import cc.langhai.domain.Image;
 import cc.langhai.domain.User;
+import cc.langhai.image.ImageVariant;
+import cc.langhai.minio.util.MinioUtils;
 import cc.langhai.service.ImageService;
+import cc.langhai.utils.CursorPage;
 import cc.langhai.utils.UserContext;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.ObjectUtil;
-import com.github.pagehelper.PageHelper;
-import com.github.pagehelper.PageInfo;
+import cn.hutool.core.util.StrUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -39,6 +41,9 @@ public class ImageController {
     @Autowired
     private ImageService imageService;
 
+    @Autowired
+    private MinioUtils minioUtils;
+
     /**
      * 跳转到 图库页面
      *
@@ -47,13 +52,11 @@ public class ImageController {
     @RequestMapping("/imagePage")
     public String imagePage(Model model, HttpServletRequest request,
                             @RequestParam(defaultValue = "1") Integer page,
-                            @RequestParam(defaultValue = "8") Integer size){
-        // 开启分页助手
-        PageHelper.startPage(page, size);
-
+                            @RequestParam(defaultValue = "8") Integer size,
+                            String cursor){
         Long userId = UserContext.getUserId();
-        List<Image> list = imageService.getAllImageByUser(userId);
-        PageInfo<Image> pageInfo = new PageInfo<>(list);
+        CursorPage<Image> cursorPage = imageService.getAllImageByUser(userId, page, size, cursor);
+        List<Image> list = cursorPage.getList();
         String url = "";
 
         if(CollectionUtil.isNotEmpty(list)){
@@ -62,12 +65,18 @@ public class ImageController {
                 String urlPrefix = String.valueOf(requestURL.substring(0, requestURL.length() - request.getRequestURI().length()));
                 url = urlPrefix + "/minio/download?minioName=" + image.getMinioName();
                 image.setUrl(url);
+                // 图库列表展示缩略图 没有生成变体时使用原图
+                String thumbName = StrUtil.isNotBlank(image.getVariant())
+                        ? ImageVariant.THUMB.objectName(image.getMinioName(), image.getVariant()) : image.getMinioName();
+                image.setThumbUrl(minioUtils.imageUrl(thumbName));
             }
         }
         model.addAttribute("list", list);
         model.addAttribute("page", page);
         model.addAttribute("size", size);
-        model.addAttribute("pages", pageInfo.getPages());
+        model.addAttribute("pages", cursorPage.getPages());
+        model.addAttribute("nextCursor", cursorPage.getNextCursor());
+        model.addAttribute("prevCursor", cursorPage.getPrevCursor());
         return "blogs/image/imageList";
     }
 
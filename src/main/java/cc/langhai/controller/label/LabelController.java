@@ -1,16 +1,15 @@
 package cc.langhai.controller.label;
 
-import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
 import cc.langhai.domain.Label;
 import cc.langhai.response.LabelReturnCode;
 import cc.langhai.response.ResultResponse;
 import cc.langhai.service.ArticleService;
 import cc.langhai.service.LabelService;
+import cc.langhai.utils.CursorPage;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson.JSONObject;
-import com.github.pagehelper.PageHelper;
-import com.github.pagehelper.PageInfo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -152,13 +151,16 @@ public class LabelController {
     public String articleLabelPage(HttpSession session, Model model,
                                     @RequestParam(defaultValue = "1") Integer page,
                                     @RequestParam(defaultValue = "10") Integer size,
+                                    String cursor,
                                     Long id){
-        PageInfo<Article> pageInfo = labelService.article(page, size, id);
+        CursorPage<ArticleSummary> cursorPage = labelService.article(page, size, cursor, id);
 
-        model.addAttribute("list", articleService.getArticleHeat(pageInfo.getList()));
+        model.addAttribute("list", articleService.getArticleHeat(cursorPage.getList()));
         model.addAttribute("page", page);
         model.addAttribute("size", size);
-        model.addAttribute("pages", pageInfo.getPages());
+        model.addAttribute("pages", cursorPage.getPages());
+        model.addAttribute("nextCursor", cursorPage.getNextCursor());
+        model.addAttribute("prevCursor", cursorPage.getPrevCursor());
         model.addAttribute("search", id);
 
         Label label = labelService.getById(id);
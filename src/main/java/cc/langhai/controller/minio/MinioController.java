@@ -1,20 +1,31 @@
 package cc.langhai.controller.minio;
 
+import cc.langhai.cache.ObjectDiskCache;
+import cc.langhai.config.constant.ImageConstant;
 import cc.langhai.minio.config.MinioProp;
 import cc.langhai.minio.util.MinioUtils;
+import cc.langhai.minio.util.ObjectInfo;
 import cc.langhai.response.MinioReturnCode;
 import cc.langhai.response.ResultResponse;
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson.JSONObject;
 import io.minio.MinioClient;
-import io.minio.ObjectStat;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
  
 import javax.servlet.http.HttpServletRequest;
@@ -23,7 +34,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * minio 控制器
@@ -31,13 +50,38 @@ import java.util.HashMap;
  * @author langhai
  * @date 2023-01-02 22:24
  */
+@Slf4j
 @Controller
 @RequestMapping("/minio")
 public class MinioController {
  
+    /**
+     * 下载时复制数据使用的缓冲区 每个请求线程复用一个
+     *
+     */
+    private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    /**
+     * tomcat sendfile 请求属性
+     *
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private MinioUtils minioUtils;
 
+    @Autowired
+    private MinioProp minioProp;
+
+    @Autowired
+    private ObjectDiskCache objectDiskCache;
+
     /**
      * 上传图片到minio服务器系统
      *
@@ -89,53 +133,219 @@ public class MinioController {
 
     /**
      * 文件下载
+     * 支持 Range 分段请求以及 ETag / Last-Modified 条件请求
+     * 上传生成的文件名不会重复使用 内容不会变化 浏览器可以长期缓存
      *
      * @param minioName
+     * @param webRequest
+     * @param request
      * @param response
      * @throws IOException
      */
     @GetMapping("/download")
     @ResponseBody
-    public void downloadFile(String minioName, HttpServletResponse response) throws IOException {
+    public void downloadFile(String minioName, WebRequest webRequest,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
         if (StringUtils.isBlank(minioName)) {
-            response.setHeader("Content-type", "text/html;charset=UTF-8");
-            String data = "文件下载失败";
-            OutputStream ps = response.getOutputStream();
-            ps.write(data.getBytes("UTF-8"));
-            // 关闭输出流
-            if(ObjectUtil.isNotNull(ps)){
-                ps.close();
+            downloadFail(response, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        // 重定向到minio 文件内容不经过应用
+        String redirectUrl = minioUtils.redirectUrl(ImageConstant.IMAGE_BUCKET, minioName);
+        if(StrUtil.isNotBlank(redirectUrl)){
+            if(MinioProp.SERVE_PRESIGNED.equals(minioProp.getServeMode())){
+                // 签名地址最多缓存有效时间的一半 浏览器再缓存一半 不会使用过期的地址
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + minioProp.getPresignExpireSeconds() / 2);
+            }else {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=86400");
             }
+            response.sendRedirect(redirectUrl);
             return;
         }
+
+        // 文件保存在本机时直接返回 否则优先使用本地磁盘缓存
+        ObjectInfo info;
+        Path filePath;
+        ObjectDiskCache.Handle cached = null;
         try {
-            // 获取文件对象
-            InputStream object = minioUtils.getObject("product", minioName);
-            byte buf[] = new byte[1024];
-            int length = 0;
-            response.reset();
-            // response.setHeader("Content-Disposition", "attachment;filename=" + URLEncoder.encode(url.substring(url.lastIndexOf("/") + 1), "UTF-8"));
-            // response.setContentType("application/octet-stream");
-            response.setCharacterEncoding("UTF-8");
-            OutputStream outputStream = response.getOutputStream();
-            // 输出文件
-            while ((length = object.read(buf)) > 0) {
-                outputStream.write(buf, 0, length);
-            }
-            // 关闭输出流
-            if(ObjectUtil.isNotNull(outputStream)){
-                outputStream.close();
+            filePath = minioUtils.localPath(ImageConstant.IMAGE_BUCKET, minioName);
+            if(ObjectUtil.isNull(filePath)){
+                cached = objectDiskCache.open(ImageConstant.IMAGE_BUCKET, minioName);
             }
+            info = ObjectUtil.isNotNull(cached) ? cached.getInfo() : minioUtils.statObject(ImageConstant.IMAGE_BUCKET, minioName);
         } catch (Exception exception) {
-            response.setHeader("Content-type", "text/html;charset=UTF-8");
-            String data = "文件下载失败";
-            OutputStream ps = response.getOutputStream();
-            ps.write(data.getBytes("UTF-8"));
-            // 关闭输出流
-            if(ObjectUtil.isNotNull(ps)){
-                ps.close();
+            IoUtil.close(cached);
+            downloadFail(response, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        try (ObjectDiskCache.Handle handle = cached) {
+            writeObject(minioName, info, filePath, ObjectUtil.isNull(handle) ? null : handle.getChannel(), webRequest, request, response);
+        }
+    }
+
+    /**
+     * 返回文件内容
+     *
+     * @param minioName
+     * @param info 文件信息
+     * @param filePath 文件在本机的路径 不在本机时为null
+     * @param cachedChannel 已经打开的磁盘缓存文件 没有缓存时为null
+     * @param webRequest
+     * @param request
+     * @param response
+     */
+    private void writeObject(String minioName, ObjectInfo info, Path filePath, FileChannel cachedChannel, WebRequest webRequest,
+                             HttpServletRequest request, HttpServletResponse response) {
+
+        String etag = "\"" + info.getEtag() + "\"";
+        long lastModified = ObjectUtil.isNull(info.getLastModified()) ? -1L : info.getLastModified().getTime();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, ReUtil.isMatch(ImageConstant.IMMUTABLE_NAME, minioName)
+                ? "public, max-age=31536000, immutable" : "public, max-age=3600");
+        if(webRequest.checkNotModified(etag, lastModified)){
+            return;
+        }
+
+        long length = info.getLength();
+        response.setContentType(contentType(info));
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // 只处理单个区间 多个区间或者 If-Range 不匹配时返回整个文件
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if(StrUtil.isNotBlank(range) && length > 0 && (StrUtil.isBlank(ifRange) || etag.equals(ifRange))){
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = Collections.emptyList();
             }
+            if(ranges.size() == 1){
+                HttpRange httpRange = ranges.get(0);
+                start = httpRange.getRangeStart(length);
+                end = httpRange.getRangeEnd(length);
+                if(start >= length || start > end){
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        response.setContentLengthLong(length == 0 ? 0 : end - start + 1);
+        if("HEAD".equals(request.getMethod()) || length == 0){
+            return;
         }
+
+        if(ObjectUtil.isNotNull(filePath)){
+            writeFile(filePath, start, end - start + 1, request, response);
+            return;
+        }
+        if(ObjectUtil.isNotNull(cachedChannel)){
+            // 缓存文件随时可能被淘汰删除 不能交给 sendfile 按文件名重新打开 使用已经打开的文件
+            writeChannel(cachedChannel, start, end - start + 1, response);
+            return;
+        }
+
+        try (InputStream object = start == 0 && end == length - 1
+                ? minioUtils.getObject(ImageConstant.IMAGE_BUCKET, minioName)
+                : minioUtils.getObject(ImageConstant.IMAGE_BUCKET, minioName, start, end - start + 1)) {
+            byte[] buffer = COPY_BUFFER.get();
+            OutputStream outputStream = response.getOutputStream();
+            int read;
+            while ((read = object.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            // 浏览器中断下载 响应头已经发送 只能结束响应
+            log.debug("文件下载中断 {}", minioName, e);
+        } catch (Exception e) {
+            log.warn("读取minio文件失败 {}", minioName, e);
+        }
+    }
+
+    /**
+     * 返回本地文件
+     * tomcat 支持 sendfile 时交给 tomcat 由操作系统直接从文件发送到网络 否则使用 transferTo
+     *
+     * @param path 本地文件
+     * @param position 开始位置
+     * @param count 字节数
+     * @param request
+     * @param response
+     */
+    private void writeFile(Path path, long position, long count, HttpServletRequest request, HttpServletResponse response) {
+        if(Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))){
+            request.setAttribute(SENDFILE_FILENAME, path.toString());
+            request.setAttribute(SENDFILE_START, position);
+            request.setAttribute(SENDFILE_END, position + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            writeChannel(channel, position, count, response);
+        } catch (IOException e) {
+            log.warn("打开本地文件失败 {}", path, e);
+        }
+    }
+
+    /**
+     * 使用 transferTo 返回已经打开的文件
+     *
+     * @param channel
+     * @param position 开始位置
+     * @param count 字节数
+     * @param response
+     */
+    private void writeChannel(FileChannel channel, long position, long count, HttpServletResponse response) {
+        try {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            while (count > 0) {
+                long transferred = channel.transferTo(position, count, target);
+                if(transferred <= 0){
+                    log.warn("本地文件内容少于响应长度 缺少{}字节", count);
+                    break;
+                }
+                position += transferred;
+                count -= transferred;
+            }
+        } catch (IOException e) {
+            // 浏览器中断下载 响应头已经发送 只能结束响应
+            log.debug("文件下载中断", e);
+        }
+    }
+
+    /**
+     * 文件的Content-Type 上传时没有记录时按照文件名判断
+     *
+     * @param info
+     * @return
+     */
+    private String contentType(ObjectInfo info) {
+        String contentType = info.getContentType();
+        if(StrUtil.isNotBlank(contentType) && !MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(contentType)){
+            return contentType;
+        }
+        return MediaTypeFactory.getMediaType(info.getName()).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
+    /**
+     * 文件下载失败
+     *
+     * @param response
+     * @param status
+     * @throws IOException
+     */
+    private void downloadFail(HttpServletResponse response, int status) throws IOException {
+        response.setStatus(status);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        response.setContentType("text/html;charset=UTF-8");
+        response.getOutputStream().write("文件下载失败".getBytes(StandardCharsets.UTF_8));
     }
 
 
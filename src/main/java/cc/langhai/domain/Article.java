@@ -31,6 +31,36 @@ public class Article {
 
     private Date updateTime;
 
+    /**
+     * 文章纯文本内容 保存文章时提取
+     *
+     */
+    private String plainText;
+
+    /**
+     * 文章摘要 保存文章时提取
+     *
+     */
+    private String excerpt;
+
+    /**
+     * 文章字数 保存文章时统计
+     *
+     */
+    private Integer wordCount;
+
+    /**
+     * 阅读时长 分钟
+     *
+     */
+    private Integer readingTime;
+
+    /**
+     * 文章第一张图片地址
+     *
+     */
+    private String firstImage;
+
     /**
      * 文章作者
      *
@@ -0,0 +1,78 @@
+package cc.langhai.domain;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 文章摘要实体类 用于文章列表和搜索结果
+ * 不包含文章内容 文章内容只在展示和编辑文章时查询
+ *
+ * @author langhai
+ * @date 2023-01-13 15:20
+ */
+@Data
+public class ArticleSummary {
+
+    private Long id;
+
+    private Long userId;
+
+    private Long labelId;
+
+    private String title;
+
+    private Integer publicShow;
+
+    private Date addTime;
+
+    private Date updateTime;
+
+    /**
+     * 文章摘要
+     *
+     */
+    private String excerpt;
+
+    /**
+     * 文章字数
+     *
+     */
+    private Integer wordCount;
+
+    /**
+     * 阅读时长 分钟
+     *
+     */
+    private Integer readingTime;
+
+    /**
+     * 文章第一张图片地址
+     *
+     */
+    private String firstImage;
+
+    /**
+     * 文章作者
+     *
+     */
+    private String author;
+
+    /**
+     * 用来展示新增时间 yyyy-MM-dd HH:mm:ss
+     *
+     */
+    private String addTimeShow;
+
+    /**
+     * 文章热度
+     *
+     */
+    private String heat;
+
+    /**
+     * 文章标签
+     *
+     */
+    private String labelContent;
+}
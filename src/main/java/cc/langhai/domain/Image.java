@@ -23,6 +23,30 @@ public class Image {
 
     private Long userId;
 
+    /**
+     * 图片宽度像素 无法识别的图片为空
+     *
+     */
+    private Integer width;
+
+    /**
+     * 图片高度像素 无法识别的图片为空
+     *
+     */
+    private Integer height;
+
+    /**
+     * 已经生成的变体格式 jpg / png 为空表示没有变体
+     *
+     */
+    private String variant;
+
+    /**
+     * 模糊占位图 data url
+     *
+     */
+    private String placeholder;
+
     private Date addTime;
 
     /**
@@ -31,6 +55,12 @@ public class Image {
      */
     private String url;
 
+    /**
+     * 前端展示缩略图地址
+     *
+     */
+    private String thumbUrl;
+
     /**
      * 用来展示新增时间 yyyy-MM-dd HH:mm:ss
      *
@@ -8,6 +8,12 @@ package cc.langhai.es.config;
  */
 public class ESConstants {
 
+    /**
+     * 文章索引库别名 读写都通过别名 重建索引时切换到新的索引
+     *
+     */
+    public static final String INDEX_ALIAS = "langhaiblogs";
+
     public static final String MAPPING_TEMPLATE = "{\n" +
             "  \"settings\": {\n" +
             "    \"analysis\": {\n" +
@@ -31,6 +37,9 @@ public class ESConstants {
             "    }\n" +
             "  },\n" +
             "  \"mappings\": {\n" +
+            "    \"_source\": {\n" +
+            "      \"excludes\": [\"plainText\"]\n" +
+            "    },\n" +
             "    \"properties\": {\n" +
             "      \"id\":{\n" +
             "        \"type\": \"keyword\"\n" +
@@ -48,13 +57,37 @@ public class ESConstants {
             "        \"type\": \"long\",\n" +
             "        \"index\": false\n" +
             "      },\n" +
-            "      \"html\":{\n" +
+            "      \"plainText\":{\n" +
+            "        \"type\": \"text\",\n" +
+            "        \"analyzer\": \"ik_max_word\",\n" +
+            "        \"search_analyzer\": \"ik_smart\"\n" +
+            "      },\n" +
+            "      \"excerpt\":{\n" +
+            "        \"type\": \"keyword\",\n" +
+            "        \"index\": false\n" +
+            "      },\n" +
+            "      \"wordCount\":{\n" +
+            "        \"type\": \"integer\",\n" +
+            "        \"index\": false\n" +
+            "      },\n" +
+            "      \"readingTime\":{\n" +
+            "        \"type\": \"integer\",\n" +
+            "        \"index\": false\n" +
+            "      },\n" +
+            "      \"firstImage\":{\n" +
             "        \"type\": \"keyword\",\n" +
             "        \"index\": false\n" +
             "      },\n" +
             "      \"publicShow\":{\n" +
             "        \"type\": \"integer\"\n" +
             "      },\n" +
+            "      \"addTime\":{\n" +
+            "        \"type\": \"date\"\n" +
+            "      },\n" +
+            "      \"updateTime\":{\n" +
+            "        \"type\": \"date\",\n" +
+            "        \"index\": false\n" +
+            "      },\n" +
             "      \"addTimeShow\":{\n" +
             "        \"type\": \"keyword\",\n" +
             "        \"index\": false\n" +
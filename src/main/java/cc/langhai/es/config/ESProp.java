@@ -22,4 +22,28 @@ public class ESProp {
     private String userName;
 
     private String password;
+
+    /**
+     * 为 true 时应用启动后重建文章索引库 重建完成后切换别名
+     *
+     */
+    private Boolean reindex = false;
+
+    /**
+     * 重建索引时每个bulk请求包含的文章数量
+     *
+     */
+    private Integer reindexBatchSize = 500;
+
+    /**
+     * 重建索引时同时进行中的bulk请求数量
+     *
+     */
+    private Integer reindexConcurrency = 4;
+
+    /**
+     * 搜索最多等待的毫秒数 超时后使用数据库搜索
+     *
+     */
+    private Long searchTimeoutMillis = 800L;
 }
@@ -0,0 +1,18 @@
+package cc.langhai.es.service;
+
+/**
+ * es索引库管理 service接口
+ *
+ * @author langhai
+ * @date 2023-01-15 16:05
+ */
+public interface ESIndexService {
+
+    /**
+     * 重建文章索引库
+     * 流式读取文章写入新的版本索引 完成后原子切换别名 再补齐重建期间变化的文章
+     *
+     * @return 新的索引名称
+     */
+    String reindex();
+}
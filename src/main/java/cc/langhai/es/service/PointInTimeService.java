@@ -0,0 +1,35 @@
+package cc.langhai.es.service;
+
+/**
+ * es point in time 快照管理 service接口
+ * 相同搜索条件的翻页共用一个快照 每个节点打开的快照数量有上限
+ *
+ * @author langhai
+ * @date 2023-01-20 14:10
+ */
+public interface PointInTimeService {
+
+    /**
+     * 获取搜索条件对应的快照 没有时打开新的快照
+     *
+     * @param searchArticleStr 搜索条件
+     * @return 快照id es不支持或者请求失败时返回null
+     */
+    String acquire(String searchArticleStr);
+
+    /**
+     * 快照id变化时记录新的快照id
+     *
+     * @param searchArticleStr
+     * @param pitId
+     */
+    void update(String searchArticleStr, String pitId);
+
+    /**
+     * 翻页到最后一页 关闭快照
+     *
+     * @param searchArticleStr
+     * @param pitId
+     */
+    void close(String searchArticleStr, String pitId);
+}
@@ -0,0 +1,369 @@
+package cc.langhai.es.service.impl;
+
+import cc.langhai.config.system.SystemConfig;
+import cc.langhai.domain.Article;
+import cc.langhai.es.config.ESConstants;
+import cc.langhai.es.util.ESDocumentUtil;
+import cc.langhai.es.config.ESProp;
+import cc.langhai.es.service.ESIndexService;
+import cc.langhai.mapper.ArticleMapper;
+import cc.langhai.mq.config.MqConstants;
+import cc.langhai.mq.service.ESService;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.util.IdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * es索引库管理 service接口 实现类
+ * 文章索引通过别名 langhaiblogs 读写 实际索引为 langhaiblogs_yyyyMMddHHmmss
+ * 配置 es.reindex 为 true 时 应用启动后在后台重建索引
+ *
+ * @author langhai
+ * @date 2023-01-15 16:05
+ */
+@Slf4j
+@Service
+public class ESIndexServiceImpl implements ESIndexService {
+
+    /**
+     * 开始时间往前多算一段时间 避免各个节点时间不一致漏掉变化的文章
+     *
+     */
+    private static final long CHANGED_SINCE_SKEW = 60 * 1000L;
+
+    /**
+     * 重建索引的分布式锁 所有节点只有一个节点在重建
+     *
+     */
+    private static final String REINDEX_LOCK = "blogs:es:reindex:lock";
+
+    /**
+     * 锁的过期时间 重建期间每写入一批续期一次 节点宕机后锁自动释放
+     *
+     */
+    private static final long REINDEX_LOCK_MINUTES = 10L;
+
+    /**
+     * 持有者一致才续期或者删除 避免锁过期后误操作其他节点的锁
+     *
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    @Autowired
+    private RestHighLevelClient restHighLevelClient;
+
+    @Autowired
+    private ESProp esProp;
+
+    @Autowired
+    private ArticleMapper articleMapper;
+
+    @Autowired
+    private ESService esService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private SystemConfig systemConfig;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if(!Boolean.TRUE.equals(esProp.getReindex())){
+            return;
+        }
+
+        Thread thread = new Thread(this::reindex, "es-reindex");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public String reindex() {
+        String token = IdUtil.fastSimpleUUID();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(REINDEX_LOCK, token, REINDEX_LOCK_MINUTES, TimeUnit.MINUTES);
+        if(!Boolean.TRUE.equals(locked)){
+            log.warn("es索引正在其他节点或者本节点重建中");
+            return null;
+        }
+
+        String index = ESConstants.INDEX_ALIAS + "_" + DateUtil.format(new Date(), "yyyyMMddHHmmss");
+        Date since = new Date(System.currentTimeMillis() - CHANGED_SINCE_SKEW);
+        try {
+            long count;
+            try {
+                createIndex(index);
+                count = load(index, token);
+                finishLoad(index);
+                swapAlias(index);
+            } catch (Exception e) {
+                // 别名还没有切换 删除新索引 继续使用旧索引
+                log.error("es索引重建失败 新索引：{}", index, e);
+                deleteQuietly(index);
+                return null;
+            }
+            // 别名已经切换 旧索引已经删除 之后失败不能再删除新索引
+            long changed = catchUp(since);
+            log.info("es索引重建完成 新索引：{} 共{}篇文章 补齐{}篇重建期间变化的文章", index, count, changed);
+            return index;
+        } finally {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(REINDEX_LOCK), token);
+        }
+    }
+
+    /**
+     * 创建新的版本索引 写入期间关闭刷新
+     *
+     * @param index
+     * @throws IOException
+     */
+    private void createIndex(String index) throws IOException {
+        CreateIndexRequest request = new CreateIndexRequest(index);
+        request.source(ESConstants.MAPPING_TEMPLATE, XContentType.JSON);
+        restHighLevelClient.indices().create(request, RequestOptions.DEFAULT);
+
+        UpdateSettingsRequest settingsRequest = new UpdateSettingsRequest(index)
+                .settings(Settings.builder().put("index.refresh_interval", "-1"));
+        restHighLevelClient.indices().putSettings(settingsRequest, RequestOptions.DEFAULT);
+    }
+
+    /**
+     * 通过游标流式读取文章 分批异步bulk写入 同时进行的请求数量有上限
+     *
+     * @param index
+     * @param token 重建锁的持有者
+     * @return 写入的文章数量
+     */
+    private long load(String index, String token) {
+        int batchSize = esProp.getReindexBatchSize();
+        int concurrency = esProp.getReindexConcurrency();
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicLong failCount = new AtomicLong();
+
+        Long count = transactionTemplate.execute(status -> {
+            long total = 0L;
+            try (Cursor<Article> cursor = articleMapper.streamIndexArticle()) {
+                BulkRequest request = new BulkRequest();
+                for (Article article : cursor) {
+                    request.add(new IndexRequest(index)
+                            .id(article.getId().toString())
+                            .source(ESDocumentUtil.toSource(article), XContentType.JSON));
+                    total++;
+                    if(request.numberOfActions() >= batchSize){
+                        submit(request, permits, failCount);
+                        request = new BulkRequest();
+                        renewLock(token);
+                    }
+                }
+                if(request.numberOfActions() > 0){
+                    submit(request, permits, failCount);
+                }
+                // 等待所有bulk请求完成
+                permits.acquire(concurrency);
+                permits.release(concurrency);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return total;
+        });
+
+        if(failCount.get() > 0){
+            throw new IllegalStateException("es索引重建写入失败" + failCount.get() + "篇文章");
+        }
+        return count;
+    }
+
+    /**
+     * 续期重建锁 锁已经不属于本节点说明重建超时 终止本次重建
+     *
+     * @param token
+     */
+    private void renewLock(String token) {
+        Long renewed = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(REINDEX_LOCK),
+                token, String.valueOf(TimeUnit.MINUTES.toMillis(REINDEX_LOCK_MINUTES)));
+        if(renewed == null || renewed == 0L){
+            throw new IllegalStateException("es索引重建锁已经失效");
+        }
+    }
+
+    private void submit(BulkRequest request, Semaphore permits, AtomicLong failCount) throws InterruptedException {
+        permits.acquire();
+        int actions = request.numberOfActions();
+        restHighLevelClient.bulkAsync(request, RequestOptions.DEFAULT, new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                if(response.hasFailures()){
+                    for (BulkItemResponse item : response.getItems()) {
+                        if(item.isFailed()){
+                            failCount.incrementAndGet();
+                        }
+                    }
+                    log.error("es索引重建bulk部分失败：{}", response.buildFailureMessage());
+                }
+                permits.release();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                failCount.addAndGet(actions);
+                log.error("es索引重建bulk请求失败", e);
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * 写入完成 恢复刷新并立即刷新一次
+     *
+     * @param index
+     * @throws IOException
+     */
+    private void finishLoad(String index) throws IOException {
+        UpdateSettingsRequest settingsRequest = new UpdateSettingsRequest(index)
+                .settings(Settings.builder().putNull("index.refresh_interval"));
+        restHighLevelClient.indices().putSettings(settingsRequest, RequestOptions.DEFAULT);
+        restHighLevelClient.indices().refresh(new RefreshRequest(index), RequestOptions.DEFAULT);
+    }
+
+    /**
+     * 一次请求原子切换别名 之后删除旧的索引
+     * 旧版本直接使用 langhaiblogs 作为索引名称 切换时一起删除 别名才能使用这个名称
+     *
+     * @param index
+     * @throws IOException
+     */
+    private void swapAlias(String index) throws IOException {
+        Set<String> oldIndices = restHighLevelClient.indices()
+                .getAlias(new GetAliasesRequest(ESConstants.INDEX_ALIAS), RequestOptions.DEFAULT)
+                .getAliases().keySet();
+        boolean legacyIndex = oldIndices.isEmpty() && restHighLevelClient.indices()
+                .exists(new GetIndexRequest(ESConstants.INDEX_ALIAS), RequestOptions.DEFAULT);
+
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        request.addAliasAction(IndicesAliasesRequest.AliasActions.add().index(index).alias(ESConstants.INDEX_ALIAS));
+        for (String oldIndex : oldIndices) {
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.remove().index(oldIndex).alias(ESConstants.INDEX_ALIAS));
+        }
+        if(legacyIndex){
+            request.addAliasAction(IndicesAliasesRequest.AliasActions.removeIndex().index(ESConstants.INDEX_ALIAS));
+        }
+        restHighLevelClient.indices().updateAliases(request, RequestOptions.DEFAULT);
+
+        for (String oldIndex : oldIndices) {
+            deleteQuietly(oldIndex);
+        }
+    }
+
+    /**
+     * 重建期间的修改写到了旧索引 切换别名后按照数据库当前状态重新同步一次
+     * 同步失败的文章放入重试队列 由监听器重新同步
+     *
+     * @param since
+     * @return 同步的文章数量
+     */
+    private long catchUp(Date since) {
+        List<Long> ids;
+        try {
+            ids = articleMapper.listIdsChangedSince(since);
+        } catch (Exception e) {
+            log.error("es索引重建后查询变化的文章失败 {}之后修改的文章可能没有同步", DateUtil.formatDateTime(since), e);
+            return 0L;
+        }
+        if(CollectionUtil.isEmpty(ids)){
+            return 0L;
+        }
+
+        for (List<Long> batch : CollectionUtil.split(ids, esProp.getReindexBatchSize())) {
+            Set<Long> failIds;
+            try {
+                failIds = esService.bulkSync(new ArrayList<>(batch));
+            } catch (Exception e) {
+                log.error("es索引重建后补齐失败", e);
+                failIds = new LinkedHashSet<>(batch);
+            }
+            if(CollectionUtil.isNotEmpty(failIds)){
+                log.error("es索引重建后补齐失败的文章 放入重试队列：{}", failIds);
+                retry(failIds);
+            }
+        }
+        return ids.size();
+    }
+
+    /**
+     * 放入第一级重试队列 等待后转回新增和修改的队列
+     *
+     * @param ids
+     */
+    private void retry(Set<Long> ids) {
+        String queue = MqConstants.retryQueue(systemConfig.getEsRetryDelayMillis());
+        for (Long id : ids) {
+            try {
+                rabbitTemplate.convertAndSend(queue, id, m -> {
+                    m.getMessageProperties().setHeader(MqConstants.RETRY_HEADER, 1);
+                    return m;
+                });
+            } catch (Exception e) {
+                log.error("文章索引同步重试消息发送失败 文章id：" + id, e);
+            }
+        }
+    }
+
+    private void deleteQuietly(String index) {
+        try {
+            restHighLevelClient.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            log.warn("删除es索引{}失败：{}", index, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package cc.langhai.es.service.impl;
+
+import cc.langhai.es.config.ESConstants;
+import cc.langhai.es.config.ESProp;
+import cc.langhai.es.service.PointInTimeService;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+
+/**
+ * es point in time 快照管理 service接口 实现类
+ * 按照搜索条件缓存打开的快照 超过数量上限或者长时间没有使用时关闭
+ * 翻页到最后一页时关闭 共用快照的其他请求翻页时快照不存在 直接查询索引
+ *
+ * @author langhai
+ * @date 2023-01-20 14:10
+ */
+@Slf4j
+@Service
+public class PointInTimeServiceImpl implements PointInTimeService {
+
+    /**
+     * 快照保留时间 每次翻页都会延长
+     *
+     */
+    public static final TimeValue KEEP_ALIVE = TimeValue.timeValueMinutes(5);
+
+    /**
+     * 每个节点最多打开的快照数量
+     *
+     */
+    private static final int CAPACITY = 100;
+
+    @Autowired
+    private RestHighLevelClient restHighLevelClient;
+
+    @Autowired
+    private ESProp esProp;
+
+    /**
+     * 搜索条件对应的快照id
+     *
+     */
+    private LRUCache<String, String> pits;
+
+    @PostConstruct
+    public void init() {
+        pits = CacheUtil.newLRUCache(CAPACITY, KEEP_ALIVE.millis());
+        // 超过数量上限被淘汰或者主动删除的快照 通知es释放
+        pits.setListener((query, pitId) -> closeAsync(pitId));
+    }
+
+    @Override
+    public String acquire(String searchArticleStr) {
+        String query = normalize(searchArticleStr);
+        String pitId = pits.get(query);
+        if(StrUtil.isNotBlank(pitId)){
+            return pitId;
+        }
+
+        synchronized (this) {
+            pitId = pits.get(query);
+            if(StrUtil.isBlank(pitId)){
+                pitId = open();
+                if(StrUtil.isNotBlank(pitId)){
+                    pits.put(query, pitId);
+                }
+            }
+            return pitId;
+        }
+    }
+
+    @Override
+    public void update(String searchArticleStr, String pitId) {
+        String query = normalize(searchArticleStr);
+        synchronized (this) {
+            String current = pits.get(query, false);
+            if(StrUtil.isNotBlank(current) && StrUtil.isNotBlank(pitId) && !current.equals(pitId)){
+                // 直接覆盖 旧的快照id已经失效 不需要关闭
+                pits.put(query, pitId);
+            }
+        }
+    }
+
+    @Override
+    public void close(String searchArticleStr, String pitId) {
+        String query = normalize(searchArticleStr);
+        synchronized (this) {
+            String current = pits.get(query, false);
+            if(StrUtil.isNotBlank(current) && current.equals(pitId)){
+                // 删除时由监听器关闭
+                pits.remove(query);
+                return;
+            }
+        }
+        if(StrUtil.isNotBlank(pitId)){
+            closeAsync(pitId);
+        }
+    }
+
+    /**
+     * 打开文章索引的快照
+     *
+     * @return 快照id es不支持时返回null
+     */
+    private String open() {
+        try {
+            Request request = new Request("POST", "/" + ESConstants.INDEX_ALIAS + "/_pit");
+            request.addParameter("keep_alive", KEEP_ALIVE.getStringRep());
+            int budget = esProp.getSearchTimeoutMillis().intValue();
+            request.setOptions(RequestOptions.DEFAULT.toBuilder().setRequestConfig(
+                    RequestConfig.custom().setConnectTimeout(budget).setSocketTimeout(budget).build()));
+            Response response = restHighLevelClient.getLowLevelClient().performRequest(request);
+            return JSON.parseObject(EntityUtils.toString(response.getEntity())).getString("id");
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 异步关闭快照 快照已经过期时es返回404 忽略即可
+     *
+     * @param pitId
+     */
+    private void closeAsync(String pitId) {
+        if(StrUtil.isBlank(pitId)){
+            return;
+        }
+        JSONObject body = new JSONObject();
+        body.put("id", pitId);
+        Request request = new Request("DELETE", "/_pit");
+        request.setEntity(new NStringEntity(body.toJSONString(), ContentType.APPLICATION_JSON));
+        restHighLevelClient.getLowLevelClient().performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                log.debug("关闭es快照失败", exception);
+            }
+        });
+    }
+
+    /**
+     * 规范化搜索条件 与搜索结果缓存一致
+     *
+     * @param searchArticleStr
+     * @return
+     */
+    private String normalize(String searchArticleStr) {
+        return StrUtil.trimToEmpty(searchArticleStr).replaceAll("\\s+", " ").toLowerCase();
+    }
+}
@@ -0,0 +1,59 @@
+package cc.langhai.es.util;
+
+import cc.langhai.domain.Article;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson.JSON;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 文章索引库文档 只保存搜索和展示需要的字段 不保存文章内容html
+ *
+ * @author langhai
+ * @date 2023-01-16 14:30
+ */
+public class ESDocumentUtil {
+
+    /**
+     * 文档中纯文本的最大长度 只用于搜索 超过部分不再建立索引
+     *
+     */
+    public static final int PLAIN_TEXT_MAX_LENGTH = 10000;
+
+    /**
+     * 搜索结果列表需要的字段 搜索时只返回这些字段
+     *
+     */
+    public static final String[] SOURCE_INCLUDES = {
+            "id", "userId", "labelId", "title", "author", "labelContent", "publicShow",
+            "addTime", "updateTime", "addTimeShow", "excerpt", "wordCount", "readingTime", "firstImage"
+    };
+
+    /**
+     * 文章转换为索引库文档
+     *
+     * @param article
+     * @return 文档json
+     */
+    public static String toSource(Article article) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("id", article.getId());
+        document.put("userId", article.getUserId());
+        document.put("labelId", article.getLabelId());
+        document.put("title", article.getTitle());
+        document.put("author", article.getAuthor());
+        document.put("labelContent", article.getLabelContent());
+        document.put("publicShow", article.getPublicShow());
+        document.put("addTime", ObjectUtil.isNull(article.getAddTime()) ? null : article.getAddTime().getTime());
+        document.put("updateTime", ObjectUtil.isNull(article.getUpdateTime()) ? null : article.getUpdateTime().getTime());
+        document.put("addTimeShow", article.getAddTimeShow());
+        document.put("excerpt", article.getExcerpt());
+        document.put("wordCount", article.getWordCount());
+        document.put("readingTime", article.getReadingTime());
+        document.put("firstImage", article.getFirstImage());
+        document.put("plainText", StrUtil.sub(article.getPlainText(), 0, PLAIN_TEXT_MAX_LENGTH));
+        return JSON.toJSONString(document);
+    }
+}
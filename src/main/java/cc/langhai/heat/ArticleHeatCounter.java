@@ -0,0 +1,173 @@
+package cc.langhai.heat;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文章热度计数器
+ * 文章展示时只在本地累加 由定时任务批量 INCRBY 写回redis
+ *
+ * @author langhai
+ * @date 2023-01-12 10:20
+ */
+@Slf4j
+@Component
+public class ArticleHeatCounter {
+
+    /**
+     * 文章热度值在redis当中的过期时间 7天
+     *
+     */
+    public static final long ARTICLE_HEAT_EXPIRE_MINUTES = 7 * 24 * 60;
+
+    /**
+     * 本地记录的redis热度值数量上限
+     *
+     */
+    private static final int KNOWN_HEAT_CAPACITY = 10000;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 还没有写回redis的热度增量
+     * 增加和移除都在 ConcurrentHashMap 的原子操作当中进行 增量不会加到已经移除的计数器上
+     *
+     */
+    private final ConcurrentHashMap<String, AtomicLong> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 最近一次写回后redis当中的热度值
+     *
+     */
+    private final LRUCache<String, Long> known = CacheUtil.newLRUCache(KNOWN_HEAT_CAPACITY);
+
+    /**
+     * 增加一个热度 返回当前热度值
+     * 只有本节点第一次访问该文章时才会读取一次redis
+     *
+     * @param key
+     * @return
+     */
+    public long increment(String key) {
+        add(key, 1L);
+
+        Long base = known.get(key);
+        if(base == null){
+            String heat = redisTemplate.opsForValue().get(key);
+            base = StrUtil.isBlank(heat) ? 0L : Long.valueOf(heat);
+            known.put(key, base);
+        }
+
+        return base + pending(key);
+    }
+
+    /**
+     * 本地还没有写回redis的热度增量
+     *
+     * @param key
+     * @return
+     */
+    public long pending(String key) {
+        AtomicLong count = pending.get(key);
+        return count == null ? 0L : count.get();
+    }
+
+    /**
+     * 定时将本地热度增量通过管道 INCRBY 写回redis
+     *
+     */
+    @Scheduled(fixedDelayString = "${langhai.blogs.heatFlushMillis:300}")
+    public void flush() {
+        List<String> keys = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+
+        for (Map.Entry<String, AtomicLong> entry : pending.entrySet()) {
+            String key = entry.getKey();
+            long delta = entry.getValue().getAndSet(0L);
+            if(delta > 0){
+                keys.add(key);
+                deltas.add(delta);
+                continue;
+            }
+
+            // 一个周期内没有访问的文章 移除计数器 与增加互斥 移除前又有访问时保留
+            pending.computeIfPresent(key, (k, count) -> count.get() == 0L ? null : count);
+        }
+
+        if(CollectionUtil.isEmpty(keys)){
+            return;
+        }
+
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                    for (int i = 0; i < keys.size(); i++) {
+                        redisOperations.opsForValue().increment(keys.get(i), deltas.get(i));
+                        redisOperations.expire(keys.get(i), ARTICLE_HEAT_EXPIRE_MINUTES, TimeUnit.MINUTES);
+                    }
+                    return null;
+                }
+            });
+
+            // 每个key对应 INCRBY 与 EXPIRE 两个结果
+            for (int i = 0; i < keys.size(); i++) {
+                Object heat = results.get(i * 2);
+                if(heat instanceof Long){
+                    known.put(keys.get(i), (Long) heat);
+                }
+            }
+        } catch (Exception e) {
+            // 写回失败 增量放回本地 等待下一次写回
+            for (int i = 0; i < keys.size(); i++) {
+                add(keys.get(i), deltas.get(i));
+            }
+            log.error("文章热度写回redis失败", e);
+        }
+    }
+
+    /**
+     * 累加本地热度增量
+     *
+     * @param key
+     * @param delta
+     */
+    private void add(String key, long delta) {
+        pending.compute(key, (k, count) -> {
+            if(count == null){
+                count = new AtomicLong();
+            }
+            count.addAndGet(delta);
+            return count;
+        });
+    }
+
+    /**
+     * 应用关闭前 写回剩余的热度增量
+     *
+     */
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+}
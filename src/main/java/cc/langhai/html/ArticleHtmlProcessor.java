@@ -0,0 +1,267 @@
+package cc.langhai.html;
+
+import cc.langhai.domain.Image;
+import cc.langhai.image.ImageVariant;
+import cc.langhai.mapper.ImageMapper;
+import cc.langhai.minio.config.MinioProp;
+import cc.langhai.minio.util.MinioUtils;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.safety.Cleaner;
+import org.jsoup.safety.Safelist;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 文章html处理
+ * 文章保存时按照白名单过滤一次 并且把图片地址改写为可以缓存的直接地址 补充懒加载、宽高属性以及变体srcset
+ * 保存处理之后的结果 页面展示时直接输出 不再解析html
+ *
+ * @author langhai
+ * @date 2023-01-18 19:30
+ */
+@Component
+public class ArticleHtmlProcessor {
+
+    /**
+     * 解析相对地址使用的基础地址 只用来校验协议
+     *
+     */
+    private static final String BASE_URI = "http://localhost/";
+
+    /**
+     * 记录原图文件名的属性 再次编辑时图片地址可能已经是变体
+     *
+     */
+    private static final String MINIO_NAME_ATTR = "data-minio-name";
+
+    private static final Pattern MINIO_NAME = Pattern.compile("[?&]minioName=([^&#]+)");
+
+    /**
+     * style 属性允许的样式 富文本编辑器产生的文字、段落、表格和图片样式
+     * 不允许定位、层级、外边距等可以让文章内容覆盖页面其他部分的样式
+     *
+     */
+    private static final Set<String> STYLE_PROPERTIES = CollectionUtil.newHashSet(
+            "color", "background-color", "text-align", "text-indent", "text-decoration", "text-decoration-line",
+            "font-weight", "font-style", "font-size", "font-family", "line-height", "letter-spacing",
+            "vertical-align", "white-space", "list-style-type", "padding-left",
+            "width", "height", "max-width",
+            "border", "border-collapse", "border-color", "border-style", "border-width");
+
+    /**
+     * style 属性当中不允许出现的内容
+     *
+     */
+    private static final Pattern UNSAFE_STYLE = Pattern.compile("url\\s*\\(|expression\\s*\\(|javascript:|behavior\\s*:|@import", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * 富文本编辑器可以产生的标签和属性
+     *
+     */
+    private static final Safelist SAFELIST = Safelist.relaxed()
+            .addTags("hr", "del", "s", "ins", "mark", "figure", "figcaption", "input")
+            .addAttributes(":all", "style", "class")
+            .addAttributes("img", "loading", "decoding", "srcset", "sizes", MINIO_NAME_ATTR)
+            .addAttributes("a", "target", "rel")
+            .addAttributes("td", "colspan", "rowspan")
+            .addAttributes("th", "colspan", "rowspan")
+            .addAttributes("input", "type", "checked", "disabled")
+            .preserveRelativeLinks(true);
+
+    @Autowired
+    private MinioProp minioProp;
+
+    @Autowired
+    private ImageMapper imageMapper;
+
+    @Autowired
+    private MinioUtils minioUtils;
+
+    /**
+     * 处理文章html
+     *
+     * @param html 富文本编辑器提交的html
+     * @return 过滤、改写之后的html
+     */
+    public String process(String html) {
+        if(StrUtil.isBlank(html)){
+            return html;
+        }
+
+        Document dirty = Jsoup.parseBodyFragment(html, BASE_URI);
+        Document document = new Cleaner(SAFELIST).clean(dirty);
+        document.outputSettings().prettyPrint(false);
+
+        for (Element element : document.select("[style]")) {
+            String style = cleanStyle(element.attr("style"));
+            if(StrUtil.isEmpty(style)){
+                element.removeAttr("style");
+            }else {
+                element.attr("style", style);
+            }
+        }
+        for (Element input : document.select("input")) {
+            // 只保留待办事项的复选框
+            if(!"checkbox".equalsIgnoreCase(input.attr("type"))){
+                input.remove();
+            }else {
+                input.attr("disabled", true);
+            }
+        }
+        for (Element link : document.select("a[target=_blank]")) {
+            link.attr("rel", "noopener noreferrer");
+        }
+
+        rewriteImages(document);
+        return document.body().html();
+    }
+
+    /**
+     * 只保留白名单当中的样式
+     *
+     * @param style style 属性
+     * @return 过滤之后的样式 没有可以保留的样式时返回空字符串
+     */
+    private String cleanStyle(String style) {
+        if(ReUtil.contains(UNSAFE_STYLE, style)){
+            return "";
+        }
+
+        List<String> declarations = new ArrayList<>();
+        for (String declaration : StrUtil.split(style, ';')) {
+            int colon = declaration.indexOf(':');
+            if(colon <= 0){
+                continue;
+            }
+            String property = StrUtil.trim(declaration.substring(0, colon)).toLowerCase();
+            String value = StrUtil.trim(declaration.substring(colon + 1));
+            if(STYLE_PROPERTIES.contains(property) && StrUtil.isNotEmpty(value)){
+                declarations.add(property + ": " + value);
+            }
+        }
+        return String.join("; ", declarations);
+    }
+
+    /**
+     * 改写minio图片地址 补充懒加载、异步解码以及宽高属性
+     *
+     * @param document
+     */
+    private void rewriteImages(Document document) {
+        List<Element> images = document.select("img");
+        if(images.isEmpty()){
+            return;
+        }
+
+        List<String> minioNames = new ArrayList<>();
+        for (Element image : images) {
+            String minioName = minioName(image);
+            if(StrUtil.isNotBlank(minioName)){
+                minioNames.add(minioName);
+            }
+        }
+        Map<String, Image> imageMap = Collections.emptyMap();
+        if(CollectionUtil.isNotEmpty(minioNames)){
+            imageMap = imageMapper.listImageByMinioNames(CollectionUtil.distinct(minioNames)).stream()
+                    .collect(Collectors.toMap(Image::getMinioName, Function.identity(), (a, b) -> a));
+        }
+
+        for (Element image : images) {
+            image.attr("loading", "lazy");
+            image.attr("decoding", "async");
+
+            String minioName = minioName(image);
+            if(StrUtil.isBlank(minioName)){
+                continue;
+            }
+            image.attr(MINIO_NAME_ATTR, minioName);
+            image.attr("src", minioUtils.imageUrl(minioName));
+            image.removeAttr("srcset");
+            image.removeAttr("sizes");
+            // 富文本编辑器给图片包裹的原图链接
+            Element parent = image.parent();
+            if(ObjectUtil.isNotNull(parent) && "a".equals(parent.tagName()) && StrUtil.isNotBlank(minioName(parent.attr("href")))){
+                parent.attr("href", minioUtils.imageUrl(minioName));
+            }
+
+            Image record = imageMap.get(minioName);
+            if(ObjectUtil.isNotNull(record) && ObjectUtil.isNotNull(record.getWidth()) && ObjectUtil.isNotNull(record.getHeight())
+                    && !image.hasAttr("width") && !image.hasAttr("height")){
+                image.attr("width", String.valueOf(record.getWidth()));
+                image.attr("height", String.valueOf(record.getHeight()));
+            }
+            if(ObjectUtil.isNotNull(record) && StrUtil.isNotBlank(record.getVariant()) && ObjectUtil.isNotNull(record.getWidth())){
+                srcset(image, record);
+            }
+        }
+    }
+
+    /**
+     * 已经生成变体的图片 默认使用中图 由浏览器按照显示宽度从变体当中选择
+     *
+     * @param image img标签
+     * @param record 图片
+     */
+    private void srcset(Element image, Image record) {
+        List<String> candidates = new ArrayList<>();
+        String src = null;
+        for (ImageVariant variant : ImageVariant.of(record.getWidth())) {
+            String url = minioUtils.imageUrl(variant.objectName(record.getMinioName(), record.getVariant()));
+            candidates.add(url + " " + variant.actualWidth(record.getWidth()) + "w");
+            if(src == null && variant.getWidth() >= ImageVariant.MEDIUM.getWidth()){
+                src = url;
+            }
+        }
+        image.attr("src", src);
+        image.attr("srcset", String.join(", ", candidates));
+        image.attr("sizes", "(max-width: " + ImageVariant.MEDIUM.getWidth() + "px) 100vw, " + ImageVariant.MEDIUM.getWidth() + "px");
+    }
+
+    /**
+     * 图片对应的minio原图文件名
+     *
+     * @param image img标签
+     * @return 不是minio图片返回null
+     */
+    private String minioName(Element image) {
+        String minioName = image.attr(MINIO_NAME_ATTR);
+        return StrUtil.isNotBlank(minioName) ? minioName : minioName(image.attr("src"));
+    }
+
+    /**
+     * 从图片地址当中解析minio文件名
+     *
+     * @param url 图片地址
+     * @return 不是minio图片返回null
+     */
+    private String minioName(String url) {
+        if(StrUtil.isBlank(url)){
+            return null;
+        }
+        if(StrUtil.contains(url, "/minio/download")){
+            String minioName = ReUtil.get(MINIO_NAME, url, 1);
+            return StrUtil.isBlank(minioName) ? null : URLUtil.decode(minioName);
+        }
+        String publicUrl = StrUtil.removeSuffix(minioProp.getPublicUrl(), "/");
+        if(StrUtil.isNotBlank(publicUrl) && url.startsWith(publicUrl + "/")){
+            return URLUtil.decode(url.substring(publicUrl.length() + 1));
+        }
+        return null;
+    }
+}
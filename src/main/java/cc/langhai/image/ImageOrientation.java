@@ -0,0 +1,208 @@
+package cc.langhai.image;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * jpg图片的exif方向
+ * 手机竖着拍摄的照片像素按照横向保存 由exif方向标记显示时需要旋转
+ * ImageIO 读取时不处理方向 重新编码又会丢失方向标记 因此生成变体之前先按照方向旋转像素
+ *
+ * @author langhai
+ * @date 2023-01-20 11:00
+ */
+public class ImageOrientation {
+
+    /**
+     * 正常方向
+     *
+     */
+    public static final int NORMAL = 1;
+
+    /**
+     * 读取方向标记时最多读取的字节数 exif位于文件开头 最大64K
+     *
+     */
+    public static final int READ_LIMIT = 128 * 1024;
+
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ImageOrientation() {
+    }
+
+    /**
+     * 读取jpg文件开头的exif方向标记 不解码图片
+     *
+     * @param inputStream 文件内容 最多读取 READ_LIMIT 字节
+     * @return 1~8 不是jpg或者没有方向标记时返回 NORMAL
+     */
+    public static int read(InputStream inputStream) {
+        try {
+            DataInputStream in = new DataInputStream(inputStream);
+            if(in.readUnsignedShort() != 0xFFD8){
+                return NORMAL;
+            }
+            long position = 2;
+            while (true) {
+                if(in.readUnsignedByte() != 0xFF){
+                    return NORMAL;
+                }
+                int marker = in.readUnsignedByte();
+                position += 2;
+                while (marker == 0xFF) {
+                    marker = in.readUnsignedByte();
+                    position++;
+                }
+                // 图像数据或者文件结束 exif只会出现在这之前
+                if(marker == 0xDA || marker == 0xD9){
+                    return NORMAL;
+                }
+                if(marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)){
+                    continue;
+                }
+                int length = in.readUnsignedShort() - 2;
+                position += 2 + length;
+                // 调用方可能使用 mark / reset 重新读取 不超过读取上限
+                if(length < 0 || position > READ_LIMIT){
+                    return NORMAL;
+                }
+                if(marker != 0xE1){
+                    skipFully(in, length);
+                    continue;
+                }
+                byte[] segment = new byte[length];
+                in.readFully(segment);
+                if(length > 6 && segment[0] == 'E' && segment[1] == 'x' && segment[2] == 'i' && segment[3] == 'f'
+                        && segment[4] == 0 && segment[5] == 0){
+                    return orientation(segment, 6);
+                }
+            }
+        } catch (EOFException e) {
+            return NORMAL;
+        } catch (IOException e) {
+            return NORMAL;
+        }
+    }
+
+    private static void skipFully(InputStream in, long length) throws IOException {
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if(skipped <= 0){
+                if(in.read() < 0){
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    /**
+     * 解析exif当中tiff格式的第一个IFD 查找方向标记
+     *
+     * @param data app1段内容
+     * @param tiff tiff头开始位置
+     * @return
+     */
+    private static int orientation(byte[] data, int tiff) {
+        if(data.length < tiff + 8){
+            return NORMAL;
+        }
+        boolean little = data[tiff] == 'I' && data[tiff + 1] == 'I';
+        if(!little && !(data[tiff] == 'M' && data[tiff + 1] == 'M')){
+            return NORMAL;
+        }
+        long ifd = tiff + readInt(data, tiff + 4, little);
+        if(ifd + 2 > data.length){
+            return NORMAL;
+        }
+        int count = readShort(data, (int) ifd, little);
+        for (int i = 0; i < count; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if(entry + 12 > data.length){
+                return NORMAL;
+            }
+            if(readShort(data, entry, little) == ORIENTATION_TAG){
+                int value = readShort(data, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean little) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return little ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long readInt(byte[] data, int offset, boolean little) {
+        long high = readShort(data, little ? offset + 2 : offset, little);
+        long low = readShort(data, little ? offset : offset + 2, little);
+        return (high << 16) | low;
+    }
+
+    /**
+     * 方向5~8需要旋转90度 显示的宽高与像素宽高相反
+     *
+     * @param orientation
+     * @return
+     */
+    public static boolean swapsSize(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    /**
+     * 按照方向旋转、翻转像素 得到正常显示的图片
+     *
+     * @param source 图片
+     * @param orientation exif方向
+     * @return 正常方向时返回原图
+     */
+    public static BufferedImage apply(BufferedImage source, int orientation) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        AffineTransform transform;
+        switch (orientation) {
+            case 2:
+                transform = new AffineTransform(-1, 0, 0, 1, w, 0);
+                break;
+            case 3:
+                transform = new AffineTransform(-1, 0, 0, -1, w, h);
+                break;
+            case 4:
+                transform = new AffineTransform(1, 0, 0, -1, 0, h);
+                break;
+            case 5:
+                transform = new AffineTransform(0, 1, 1, 0, 0, 0);
+                break;
+            case 6:
+                transform = new AffineTransform(0, 1, -1, 0, h, 0);
+                break;
+            case 7:
+                transform = new AffineTransform(0, -1, -1, 0, h, w);
+                break;
+            case 8:
+                transform = new AffineTransform(0, -1, 1, 0, 0, w);
+                break;
+            default:
+                return source;
+        }
+
+        boolean swap = swapsSize(orientation);
+        BufferedImage target = new BufferedImage(swap ? h : w, swap ? w : h,
+                source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+}
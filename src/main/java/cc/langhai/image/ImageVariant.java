@@ -0,0 +1,85 @@
+package cc.langhai.image;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图片变体 上传之后生成的缩略图、中图以及重新压缩的大图
+ * 变体与原图保存在同一个存储桶 文件名为 原文件名_变体名.格式
+ *
+ * @author langhai
+ * @date 2023-01-19 09:30
+ */
+public enum ImageVariant {
+
+    /**
+     * 缩略图 图库列表使用
+     *
+     */
+    THUMB("thumb", 320),
+
+    /**
+     * 中图 文章页面默认使用
+     *
+     */
+    MEDIUM("medium", 1024),
+
+    /**
+     * 去除元数据并重新压缩的大图
+     *
+     */
+    LARGE("large", 2048);
+
+    private final String suffix;
+
+    private final int width;
+
+    ImageVariant(String suffix, int width){
+        this.suffix = suffix;
+        this.width = width;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * 变体的文件名
+     *
+     * @param minioName 原图文件名
+     * @param format 变体格式 jpg 或者 png
+     * @return
+     */
+    public String objectName(String minioName, String format) {
+        String mainName = StrUtil.contains(minioName, '.') ? StrUtil.subBefore(minioName, ".", true) : minioName;
+        return mainName + "_" + suffix + "." + format;
+    }
+
+    /**
+     * 原图宽度对应的变体宽度 不会放大图片
+     *
+     * @param originalWidth
+     * @return
+     */
+    public int actualWidth(int originalWidth) {
+        return Math.min(width, originalWidth);
+    }
+
+    /**
+     * 需要生成的变体 比原图小的缩略图和中图 大图总是生成
+     *
+     * @param originalWidth 原图宽度
+     * @return
+     */
+    public static List<ImageVariant> of(int originalWidth) {
+        List<ImageVariant> variants = new ArrayList<>();
+        for (ImageVariant variant : values()) {
+            if(variant == LARGE || variant.width < originalWidth){
+                variants.add(variant);
+            }
+        }
+        return variants;
+    }
+}
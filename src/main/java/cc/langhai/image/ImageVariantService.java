@@ -0,0 +1,169 @@
+package cc.langhai.image;
+
+import cc.langhai.config.constant.ImageConstant;
+import cc.langhai.domain.Image;
+import cc.langhai.mapper.ImageMapper;
+import cc.langhai.minio.util.MinioUtils;
+import cc.langhai.service.ArticleService;
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 图片变体生成
+ * 读取原图之后按照宽度生成缩略图、中图和大图 重新编码时不保留原图的元数据
+ * 另外生成一张很小的模糊占位图 以data url的形式保存在图片表
+ *
+ * @author langhai
+ * @date 2023-01-19 09:50
+ */
+@Slf4j
+@Component
+public class ImageVariantService {
+
+    @Autowired
+    private MinioUtils minioUtils;
+
+    @Autowired
+    private ImageMapper imageMapper;
+
+    @Autowired
+    private ArticleService articleService;
+
+    /**
+     * 生成图片变体
+     *
+     * @param minioName 原图文件名
+     * @throws IOException
+     */
+    public void process(String minioName) throws IOException {
+        Image image = imageMapper.getImageByMinioName(minioName);
+        if(ObjectUtil.isNull(image) || StrUtil.isNotBlank(image.getVariant())){
+            return;
+        }
+        // gif可能是动图 重新编码会丢失动画
+        if(StrUtil.endWithIgnoreCase(minioName, ".gif")){
+            return;
+        }
+        // 像素过多的图片解码需要大量内存 不处理
+        if(ObjectUtil.isNotNull(image.getWidth()) && ObjectUtil.isNotNull(image.getHeight())
+                && (long) image.getWidth() * image.getHeight() > ImageConstant.IMAGE_VARIANT_MAX_PIXELS){
+            log.info("图片像素过多 不生成变体 {}", minioName);
+            return;
+        }
+
+        BufferedImage original;
+        try (InputStream inputStream = new BufferedInputStream(minioUtils.getObject(ImageConstant.IMAGE_BUCKET, minioName))) {
+            inputStream.mark(ImageOrientation.READ_LIMIT);
+            int orientation = ImageOrientation.read(inputStream);
+            inputStream.reset();
+            original = ImageIO.read(inputStream);
+            if(ObjectUtil.isNotNull(original)){
+                // 变体重新编码之后没有exif方向标记 先把像素旋转为显示的方向
+                original = ImageOrientation.apply(original, orientation);
+            }
+        }
+        if(ObjectUtil.isNull(original)){
+            log.info("无法识别的图片格式 不生成变体 {}", minioName);
+            return;
+        }
+
+        // 有透明通道的图片使用png 其余使用jpg
+        boolean alpha = original.getColorModel().hasAlpha();
+        String format = alpha ? "png" : "jpg";
+        String contentType = alpha ? "image/png" : "image/jpeg";
+        for (ImageVariant variant : ImageVariant.of(original.getWidth())) {
+            BufferedImage scaled = scale(original, variant.actualWidth(original.getWidth()), alpha);
+            minioUtils.putObject(ImageConstant.IMAGE_BUCKET, variant.objectName(minioName, format),
+                    encode(scaled, alpha, ImageConstant.IMAGE_VARIANT_QUALITY), contentType);
+        }
+
+        BufferedImage tiny = scale(original, Math.min(ImageConstant.IMAGE_PLACEHOLDER_WIDTH, original.getWidth()), false);
+        String placeholder = "data:image/jpeg;base64," + Base64.encode(encode(tiny, false, ImageConstant.IMAGE_PLACEHOLDER_QUALITY));
+
+        imageMapper.updateImageVariant(minioName, format, placeholder, original.getWidth(), original.getHeight());
+        articleService.refreshArticleImages(image.getUserId(), image.getAddTime(), minioName);
+    }
+
+    /**
+     * 等比缩放 每次最多缩小一半 保证缩略图的清晰度
+     *
+     * @param source 原图
+     * @param width 目标宽度
+     * @param alpha 是否保留透明通道
+     * @return
+     */
+    private BufferedImage scale(BufferedImage source, int width, boolean alpha) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                if(!alpha){
+                    // jpg没有透明通道 透明部分填充白色
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    /**
+     * 编码图片 png无损压缩 jpg按照质量参数压缩
+     *
+     * @param image
+     * @param png
+     * @param quality jpg质量 0~1
+     * @return
+     * @throws IOException
+     */
+    private byte[] encode(BufferedImage image, boolean png, float quality) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        if(png){
+            ImageIO.write(image, "png", outputStream);
+            return outputStream.toByteArray();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,29 @@
+package cc.langhai.lucene.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * lucene 内嵌搜索引擎配置文件
+ *
+ * @author langhai
+ * @date 2023-01-15 10:05
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "lucene")
+public class LuceneProp {
+
+    /**
+     * 是否使用内嵌搜索引擎代替es搜索引擎
+     *
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 索引文件存储目录
+     *
+     */
+    private String path = "./lucene-index";
+}
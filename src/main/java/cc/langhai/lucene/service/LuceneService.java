@@ -0,0 +1,52 @@
+package cc.langhai.lucene.service;
+
+import cc.langhai.domain.Article;
+
+import java.util.HashMap;
+
+/**
+ * lucene 内嵌搜索引擎 service接口
+ *
+ * @author langhai
+ * @date 2023-01-15 10:12
+ */
+public interface LuceneService {
+
+    /**
+     * 是否启用内嵌搜索引擎
+     *
+     * @return
+     */
+    boolean enabled();
+
+    /**
+     * 增加 / 更新 索引当中的文章 文章不存在或者不公开时删除
+     *
+     * @param id
+     * @param article
+     */
+    void save(Long id, Article article);
+
+    /**
+     * 删除索引当中的文章
+     *
+     * @param id
+     */
+    void deleteById(Long id);
+
+    /**
+     * 文章搜索功能 返回结果与es搜索相同
+     *
+     * @param page
+     * @param size
+     * @param searchArticleStr
+     * @return
+     */
+    HashMap<String, Object> search(Integer page, Integer size, String searchArticleStr);
+
+    /**
+     * 从数据库重新建立索引
+     *
+     */
+    void rebuild();
+}
@@ -0,0 +1,359 @@
+package cc.langhai.lucene.service.impl;
+
+import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
+import cc.langhai.exception.BusinessException;
+import cc.langhai.lucene.config.LuceneProp;
+import cc.langhai.lucene.service.LuceneService;
+import cc.langhai.mapper.ArticleMapper;
+import cc.langhai.response.ESReturnCode;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.extra.pinyin.PinyinUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.cjk.CJKAnalyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * lucene 内嵌搜索引擎 service接口 实现类
+ * 索引存储在本地磁盘 使用 MMapDirectory 读取
+ * 中文使用二元分词 标题、作者、标签额外建立拼音全拼和首字母索引
+ *
+ * @author langhai
+ * @date 2023-01-15 10:20
+ */
+@Slf4j
+@Service
+public class LuceneServiceImpl implements LuceneService {
+
+    /**
+     * 参与搜索的字段以及权重
+     *
+     */
+    private static final String[] SEARCH_FIELDS = {"title", "labelContent", "author", "plainText"};
+
+    private static final float[] SEARCH_BOOSTS = {3.0f, 2.0f, 2.0f, 1.0f};
+
+    /**
+     * 拼音字段
+     *
+     */
+    private static final String PINYIN_FIELD = "pinyin";
+
+    /**
+     * 重建索引时每批读取的文章数量
+     *
+     */
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private static final Pattern LETTERS = Pattern.compile("[a-z]+");
+
+    /**
+     * 文档写入索引的时间 重建索引结束时删除重建开始之前写入的文档
+     *
+     */
+    private static final String INDEX_TIME_FIELD = "indexTime";
+
+    @Autowired
+    private LuceneProp luceneProp;
+
+    @Autowired
+    private ArticleMapper articleMapper;
+
+    private Analyzer analyzer;
+
+    private Directory directory;
+
+    private IndexWriter indexWriter;
+
+    private SearcherManager searcherManager;
+
+    /**
+     * 写索引使用的锁 重建索引每一批读取数据库和写入索引期间 不会穿插写入单篇文章
+     *
+     */
+    private final Object writeLock = new Object();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if(!enabled()){
+            return;
+        }
+
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        fieldAnalyzers.put(PINYIN_FIELD, new WhitespaceAnalyzer());
+        analyzer = new PerFieldAnalyzerWrapper(new CJKAnalyzer(), fieldAnalyzers);
+
+        directory = new MMapDirectory(Paths.get(luceneProp.getPath()));
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        indexWriter = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(indexWriter, null);
+
+        // 第一次启动 索引为空 后台从数据库建立索引
+        if(indexWriter.getDocStats().numDocs == 0){
+            Thread thread = new Thread(this::rebuild, "lucene-rebuild");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if(ObjectUtil.isNull(indexWriter)){
+            return;
+        }
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    @Override
+    public boolean enabled() {
+        return Boolean.TRUE.equals(luceneProp.getEnabled());
+    }
+
+    @Override
+    public void save(Long id, Article article) {
+        if(ObjectUtil.isNull(article) || !Integer.valueOf(1).equals(article.getPublicShow())){
+            deleteById(id);
+            return;
+        }
+
+        try {
+            synchronized (writeLock) {
+                indexWriter.updateDocument(new Term("id", id.toString()), toDocument(article));
+                indexWriter.commit();
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new BusinessException(ESReturnCode.ES_DOC_UPDATE_FAIL_00001);
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        try {
+            synchronized (writeLock) {
+                indexWriter.deleteDocuments(new Term("id", id.toString()));
+                indexWriter.commit();
+            }
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            throw new BusinessException(ESReturnCode.ES_DOC_DELETE_FAIL_00000);
+        }
+    }
+
+    @Override
+    public HashMap<String, Object> search(Integer page, Integer size, String searchArticleStr) {
+        HashMap<String, Object> hashMap = new HashMap<>();
+        ArrayList<ArticleSummary> articles = new ArrayList<>();
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                int topN = page * size;
+                TopDocs topDocs;
+                if(StrUtil.isBlank(searchArticleStr)){
+                    // 没有搜索条件 按照发布时间倒序
+                    Sort sort = new Sort(new SortField("addTime", SortField.Type.LONG, true));
+                    topDocs = searcher.search(new MatchAllDocsQuery(), topN, sort);
+                }else {
+                    topDocs = searcher.search(buildQuery(searchArticleStr.trim()), topN);
+                }
+
+                ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+                for (int i = (page - 1) * size; i < scoreDocs.length; i++) {
+                    articles.add(toSummary(searcher.doc(scoreDocs[i].doc)));
+                }
+
+                long total = topDocs.totalHits.value;
+                hashMap.put("list", articles);
+                hashMap.put("pages", (total + size - 1) / size);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ESReturnCode.ES_SEARCH_FAIL_00002);
+        }
+
+        return hashMap;
+    }
+
+    /**
+     * 按照id覆盖写入每一篇文章 不清空索引 重建期间其他写入提交时搜索看到的索引仍然完整
+     * 全部写入之后删除重建开始之前写入的文档 也就是已经删除或者不再公开的文章
+     *
+     */
+    @Override
+    public void rebuild() {
+        try {
+            long rebuildTime = System.currentTimeMillis();
+            long lastId = 0L;
+            long count = 0L;
+            while (true) {
+                synchronized (writeLock) {
+                    List<Article> articleList = articleMapper.listIndexArticle(lastId, REBUILD_BATCH_SIZE);
+                    if(CollectionUtil.isEmpty(articleList)){
+                        BooleanQuery.Builder stale = new BooleanQuery.Builder();
+                        stale.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+                        stale.add(LongPoint.newRangeQuery(INDEX_TIME_FIELD, rebuildTime, Long.MAX_VALUE), BooleanClause.Occur.MUST_NOT);
+                        indexWriter.deleteDocuments(stale.build());
+                        indexWriter.commit();
+                        break;
+                    }
+                    for (Article article : articleList) {
+                        indexWriter.updateDocument(new Term("id", article.getId().toString()), toDocument(article));
+                        lastId = article.getId();
+                        count++;
+                    }
+                }
+            }
+            searcherManager.maybeRefresh();
+            log.info("lucene索引建立完成 共{}篇文章", count);
+        } catch (IOException e) {
+            log.error("lucene索引建立失败", e);
+        }
+    }
+
+    /**
+     * 组装搜索条件 各个字段按照权重匹配 纯字母时额外匹配拼音前缀
+     *
+     * @param searchArticleStr
+     * @return
+     */
+    private Query buildQuery(String searchArticleStr) {
+        QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (int i = 0; i < SEARCH_FIELDS.length; i++) {
+            Query query = queryBuilder.createBooleanQuery(SEARCH_FIELDS[i], searchArticleStr);
+            if(query != null){
+                builder.add(new BoostQuery(query, SEARCH_BOOSTS[i]), BooleanClause.Occur.SHOULD);
+            }
+        }
+
+        String letters = searchArticleStr.toLowerCase();
+        if(LETTERS.matcher(letters).matches()){
+            builder.add(new PrefixQuery(new Term(PINYIN_FIELD, letters)), BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    private Document toDocument(Article article) {
+        Document document = new Document();
+        document.add(new StringField("id", article.getId().toString(), Field.Store.YES));
+        document.add(new LongPoint(INDEX_TIME_FIELD, System.currentTimeMillis()));
+        document.add(new TextField("title", StrUtil.nullToEmpty(article.getTitle()), Field.Store.YES));
+        document.add(new TextField("author", StrUtil.nullToEmpty(article.getAuthor()), Field.Store.YES));
+        document.add(new TextField("labelContent", StrUtil.nullToEmpty(article.getLabelContent()), Field.Store.YES));
+        document.add(new TextField("plainText", StrUtil.nullToEmpty(article.getPlainText()), Field.Store.NO));
+        document.add(new TextField(PINYIN_FIELD,
+                pinyin(article.getTitle(), article.getAuthor(), article.getLabelContent()), Field.Store.NO));
+
+        long addTime = ObjectUtil.isNull(article.getAddTime()) ? 0L : article.getAddTime().getTime();
+        document.add(new NumericDocValuesField("addTime", addTime));
+        document.add(new StoredField("addTime", addTime));
+        addStored(document, "userId", article.getUserId());
+        addStored(document, "labelId", article.getLabelId());
+        addStored(document, "publicShow", article.getPublicShow());
+        addStored(document, "wordCount", article.getWordCount());
+        addStored(document, "readingTime", article.getReadingTime());
+        addStored(document, "addTimeShow", article.getAddTimeShow());
+        addStored(document, "excerpt", article.getExcerpt());
+        addStored(document, "firstImage", article.getFirstImage());
+        return document;
+    }
+
+    private void addStored(Document document, String name, Object value) {
+        if(value instanceof Long){
+            document.add(new StoredField(name, (Long) value));
+        }else if(value instanceof Integer){
+            document.add(new StoredField(name, (Integer) value));
+        }else if(value instanceof String){
+            document.add(new StoredField(name, (String) value));
+        }
+    }
+
+    private ArticleSummary toSummary(Document document) {
+        ArticleSummary article = new ArticleSummary();
+        article.setId(Long.valueOf(document.get("id")));
+        article.setTitle(document.get("title"));
+        article.setAuthor(document.get("author"));
+        article.setLabelContent(document.get("labelContent"));
+        article.setAddTimeShow(document.get("addTimeShow"));
+        article.setExcerpt(document.get("excerpt"));
+        article.setFirstImage(document.get("firstImage"));
+        article.setAddTime(new Date(numeric(document, "addTime").longValue()));
+        article.setUserId(numeric(document, "userId") == null ? null : numeric(document, "userId").longValue());
+        article.setLabelId(numeric(document, "labelId") == null ? null : numeric(document, "labelId").longValue());
+        article.setPublicShow(numeric(document, "publicShow") == null ? null : numeric(document, "publicShow").intValue());
+        article.setWordCount(numeric(document, "wordCount") == null ? null : numeric(document, "wordCount").intValue());
+        article.setReadingTime(numeric(document, "readingTime") == null ? null : numeric(document, "readingTime").intValue());
+        return article;
+    }
+
+    private Number numeric(Document document, String name) {
+        IndexableField field = document.getField(name);
+        return field == null ? null : field.numericValue();
+    }
+
+    /**
+     * 拼音全拼和首字母 用空格分隔
+     *
+     * @param texts
+     * @return
+     */
+    private String pinyin(String... texts) {
+        StringBuilder builder = new StringBuilder();
+        for (String text : texts) {
+            if(StrUtil.isBlank(text)){
+                continue;
+            }
+            builder.append(PinyinUtil.getPinyin(text, "").toLowerCase()).append(' ');
+            builder.append(PinyinUtil.getFirstLetter(text, "").toLowerCase()).append(' ');
+        }
+        return builder.toString();
+    }
+}
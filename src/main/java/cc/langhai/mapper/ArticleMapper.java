@@ -1,8 +1,12 @@
 package cc.langhai.mapper;
 
 import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
+import cc.langhai.utils.PageCursor;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -29,10 +33,23 @@ public interface ArticleMapper {
 
     /**
      * 获取用户发布的所有文章
+     * cursor 不为空时按照游标定位 limit 为空时查询全部
      *
+     * @param userId
+     * @param cursor
+     * @param offset
+     * @param limit
      * @return
      */
-    List<Article> getAllArticle(Long userId);
+    List<ArticleSummary> getAllArticle(Long userId, PageCursor cursor, Integer offset, Integer limit);
+
+    /**
+     * 获取用户发布的文章数量
+     *
+     * @param userId
+     * @return
+     */
+    Long countAllArticle(Long userId);
 
     /**
      * 获取一篇文章
@@ -42,6 +59,29 @@ public interface ArticleMapper {
      */
     Article getById(Long id);
 
+    /**
+     * 根据id批量查询未删除的文章 用于批量同步索引库 不查询文章内容html
+     *
+     * @param ids
+     * @return
+     */
+    List<Article> listByIds(List<Long> ids);
+
+    /**
+     * 流式读取所有公开未删除的文章 用于重建索引库 不查询文章内容html
+     *
+     * @return
+     */
+    Cursor<Article> streamIndexArticle();
+
+    /**
+     * 查询某个时间之后新增或者修改过的文章id 包括已删除的
+     *
+     * @param since
+     * @return
+     */
+    List<Long> listIdsChangedSince(Date since);
+
     /**
      * 更新文章信息
      *
@@ -49,6 +89,74 @@ public interface ArticleMapper {
      */
     void updateArticle(Article article);
 
+    /**
+     * 获取用户在指定时间之后发布或者修改过的文章内容
+     *
+     * @param userId
+     * @param since
+     * @return
+     */
+    List<Article> listArticleBodySince(Long userId, Date since);
+
+    /**
+     * 重新处理之后写入文章内容 只有读取之后没有被编辑过的文章才会写入
+     *
+     * @param article 处理之后的文章
+     * @param oldUpdateTime 读取时的更新时间
+     * @return 写入的行数 文章已经被编辑时返回0
+     */
+    int refreshArticleHtml(Article article, Date oldUpdateTime);
+
+    /**
+     * 按照id顺序获取一批公开的文章 用于建立搜索索引 不查询文章html内容
+     *
+     * @param lastId
+     * @param limit
+     * @return
+     */
+    List<Article> listIndexArticle(Long lastId, Integer limit);
+
+    /**
+     * 按照id顺序获取一批未压缩的文章内容 只查询id、文章内容和更新时间
+     * 小于最小压缩长度的内容保存时也不压缩 不查询
+     *
+     * @param lastId
+     * @param minLength 最小压缩字节数
+     * @param limit
+     * @return
+     */
+    List<Article> listUncompressedBody(Long lastId, Integer minLength, Integer limit);
+
+    /**
+     * 重新写入文章内容 不修改更新时间
+     * 只有读取之后没有被编辑过的文章才会写入 避免用旧内容覆盖作者刚提交的修改
+     *
+     * @param id
+     * @param html
+     * @param updateTime 读取时的更新时间
+     * @return 写入的行数 文章已经被编辑时返回0
+     */
+    int updateBody(Long id, String html, Date updateTime);
+
+    /**
+     * 按照id顺序获取一批没有纯文本的历史文章 只查询id、文章内容、是否公开和更新时间
+     *
+     * @param lastId
+     * @param limit
+     * @return
+     */
+    List<Article> listMissingText(Long lastId, Integer limit);
+
+    /**
+     * 写入根据文章内容提取的纯文本、摘要、字数、阅读时长以及第一张图片 不修改更新时间
+     * 只有读取之后没有被编辑过的文章才会写入
+     *
+     * @param article
+     * @param updateTime 读取时的更新时间
+     * @return 写入的行数 文章已经被编辑时返回0
+     */
+    int updateText(Article article, Date updateTime);
+
     /**
      * 对文章进行逻辑删除
      *
@@ -57,9 +165,22 @@ public interface ArticleMapper {
     void deleteArticle(Article article);
 
     /**
-     * 获取用户发布的所有文章
+     * 获取所有公开的文章
+     * cursor 不为空时按照游标定位 limit 为空时查询全部
+     *
+     * @param searchArticleStr
+     * @param cursor
+     * @param offset
+     * @param limit
+     * @return
+     */
+    List<ArticleSummary> getAllArticlePublicShow(String searchArticleStr, PageCursor cursor, Integer offset, Integer limit);
+
+    /**
+     * 获取公开的文章数量
      *
+     * @param searchArticleStr
      * @return
      */
-    List<Article> getAllArticlePublicShow(String searchArticleStr);
+    Long countArticlePublicShow(String searchArticleStr);
 }
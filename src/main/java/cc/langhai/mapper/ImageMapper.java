@@ -2,6 +2,7 @@ package cc.langhai.mapper;
 
 import cc.langhai.domain.Article;
 import cc.langhai.domain.Image;
+import cc.langhai.utils.PageCursor;
 import org.apache.ibatis.annotations.Mapper;
 
 import java.util.List;
@@ -23,6 +24,25 @@ public interface ImageMapper {
      */
     List<Image> getAllImageByUser(Long userId);
 
+    /**
+     * 分页获取用户的图片 cursor 不为空时按照游标定位
+     *
+     * @param userId
+     * @param cursor
+     * @param offset
+     * @param limit
+     * @return
+     */
+    List<Image> listImageByUser(Long userId, PageCursor cursor, Integer offset, Integer limit);
+
+    /**
+     * 获取用户的图片数量
+     *
+     * @param userId
+     * @return
+     */
+    Long countImageByUser(Long userId);
+
     /**
      * 新增图片
      *
@@ -38,6 +58,25 @@ public interface ImageMapper {
      */
     Image getImageByMinioName(String objectName);
 
+    /**
+     * 批量获取图片的宽高
+     *
+     * @param minioNames
+     * @return
+     */
+    List<Image> listImageByMinioNames(List<String> minioNames);
+
+    /**
+     * 记录图片已经生成的变体、占位图以及按照exif方向旋转之后的宽高
+     *
+     * @param minioName
+     * @param variant 变体格式
+     * @param placeholder 占位图
+     * @param width
+     * @param height
+     */
+    void updateImageVariant(String minioName, String variant, String placeholder, Integer width, Integer height);
+
     /**
      * 删除图片
      *
@@ -1,7 +1,8 @@
 package cc.langhai.mapper;
 
-import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
 import cc.langhai.domain.Label;
+import cc.langhai.utils.PageCursor;
 import org.apache.ibatis.annotations.Mapper;
 
 import java.util.List;
@@ -70,9 +71,21 @@ public interface LabelMapper {
 
     /**
      * 用户该标签下所有的文章
+     * cursor 不为空时按照游标定位 limit 为空时查询全部
      *
      * @param id
+     * @param cursor
+     * @param offset
+     * @param limit
      * @return
      */
-    List<Article> article(Long id);
+    List<ArticleSummary> article(Long id, PageCursor cursor, Integer offset, Integer limit);
+
+    /**
+     * 标签下的文章数量
+     *
+     * @param id
+     * @return
+     */
+    Long countArticle(Long id);
 }
@@ -1,5 +1,9 @@
 package cc.langhai.minio.config;
 
+import cc.langhai.minio.store.LocalObjectStore;
+import cc.langhai.minio.store.MinioObjectStore;
+import cc.langhai.minio.store.ObjectStore;
+import cn.hutool.core.util.StrUtil;
 import io.minio.MinioClient;
 import io.minio.errors.InvalidEndpointException;
 import io.minio.errors.InvalidPortException;
@@ -7,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
  
 /**
  * minio 核心配置类
@@ -29,8 +34,39 @@ public class MinioConfig {
      * @throws InvalidEndpointException
      */
     @Bean
+    @Primary
     public MinioClient minioClient() throws InvalidPortException, InvalidEndpointException {
         return new MinioClient(minioProp.getEndpoint(), minioProp.getAccessKey(), minioProp.getSecretKey());
     }
+
+    /**
+     * 生成签名地址使用的 MinioClient 签名包含浏览器访问的地址 因此使用 externalEndpoint
+     * 指定区域之后签名在本地完成 不需要请求minio
+     *
+     * @return
+     * @throws InvalidPortException
+     * @throws InvalidEndpointException
+     */
+    @Bean
+    public MinioClient presignMinioClient() throws InvalidPortException, InvalidEndpointException {
+        String endpoint = StrUtil.blankToDefault(minioProp.getExternalEndpoint(), minioProp.getEndpoint());
+        return new MinioClient(endpoint, minioProp.getAccessKey(), minioProp.getSecretKey(), minioProp.getRegion());
+    }
+
+    /**
+     * 文件存储 按照 store 配置使用minio或者本地文件系统
+     * 创建 MinioClient 不会连接minio 使用本地文件系统时不需要运行minio
+     *
+     * @return
+     * @throws InvalidPortException
+     * @throws InvalidEndpointException
+     */
+    @Bean
+    public ObjectStore objectStore() throws InvalidPortException, InvalidEndpointException {
+        if(MinioProp.STORE_LOCAL.equals(minioProp.getStore())){
+            return new LocalObjectStore(minioProp.getStorePath());
+        }
+        String endpoint = StrUtil.blankToDefault(minioProp.getExternalEndpoint(), minioProp.getEndpoint());
+        return new MinioObjectStore(minioClient(), presignMinioClient(), endpoint);
+    }
 }
- 
\ No newline at end of file
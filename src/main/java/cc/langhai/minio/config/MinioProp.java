@@ -15,6 +15,28 @@ import org.springframework.stereotype.Component;
 @ConfigurationProperties(prefix = "minio")
 public class MinioProp {
 
+    public static final String SERVE_PROXY = "proxy";
+
+    public static final String SERVE_PRESIGNED = "presigned";
+
+    public static final String SERVE_PUBLIC = "public";
+
+    public static final String STORE_MINIO = "minio";
+
+    public static final String STORE_LOCAL = "local";
+
+    /**
+     * 文件存储方式 minio 使用minio服务 local 保存在本地文件系统 单机部署时不需要运行minio
+     *
+     */
+    private String store = STORE_MINIO;
+
+    /**
+     * local 存储方式的根目录
+     *
+     */
+    private String storePath = "./object-store";
+
     /**
      * 连接url
      *
@@ -31,5 +53,55 @@ public class MinioProp {
      * 密码
      */
     private String secretKey;
+
+    /**
+     * 图片直接访问地址前缀 例如公开的存储桶或者cdn地址 文章图片保存为 前缀/文件名
+     * 为空时文章图片使用 /minio/download?minioName=文件名
+     *
+     */
+    private String publicUrl;
+
+    /**
+     * /minio/download 的响应方式
+     * proxy 应用读取文件并返回 presigned 重定向到带签名的临时地址 public 重定向到公开地址
+     *
+     */
+    private String serveMode = SERVE_PROXY;
+
+    /**
+     * 浏览器访问minio使用的地址 生成签名地址时使用 为空时使用 endpoint
+     *
+     */
+    private String externalEndpoint;
+
+    /**
+     * minio 区域 设置之后生成签名地址不需要请求minio
+     *
+     */
+    private String region = "us-east-1";
+
+    /**
+     * 签名地址有效时间 秒
+     *
+     */
+    private Integer presignExpireSeconds = 600;
+
+    /**
+     * 本地磁盘缓存目录 proxy 模式下热点文件从本地磁盘返回 为空时不使用磁盘缓存
+     *
+     */
+    private String cachePath;
+
+    /**
+     * 本地磁盘缓存最多使用的字节数 默认1G
+     *
+     */
+    private Long cacheBytes = 1024L * 1024 * 1024;
+
+    /**
+     * 超过该字节数的文件不缓存 默认20M
+     *
+     */
+    private Long cacheMaxObjectBytes = 20L * 1024 * 1024;
 }
  
\ No newline at end of file
@@ -0,0 +1,220 @@
+package cc.langhai.minio.store;
+
+import cc.langhai.minio.util.ObjectInfo;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+
+/**
+ * 本地文件系统存储 单机部署时代替minio
+ * 文件保存在 根目录/bucket/文件名sha1的前两位/三四位/文件名 避免单个目录文件过多
+ * 先写入同一目录的临时文件并刷到磁盘 再原子重命名 读取的一方不会看到写了一半的文件 断电之后也不会留下不完整的文件
+ * 下载时返回文件路径 由操作系统直接从文件发送到网络
+ *
+ * @author langhai
+ * @date 2023-01-19 19:40
+ */
+@Slf4j
+public class LocalObjectStore implements ObjectStore {
+
+    /**
+     * 写入文件使用的缓冲字节数
+     *
+     */
+    private static final long TRANSFER_BYTES = 1024 * 1024;
+
+    private final Path root;
+
+    public LocalObjectStore(String path) {
+        this.root = Paths.get(path).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void createBucket(String bucketName) throws IOException {
+        Files.createDirectories(root.resolve(checkName(bucketName)));
+    }
+
+    @Override
+    public void putObject(String bucketName, String objectName, InputStream inputStream, long size, String contentType) throws IOException {
+        Path target = path(bucketName, objectName);
+        Files.createDirectories(target.getParent());
+        // 临时文件以点开头 不会和文件名冲突
+        Path temp = Files.createTempFile(target.getParent(), ".upload", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ReadableByteChannel source = Channels.newChannel(inputStream);
+                long position = 0;
+                long transferred;
+                while ((transferred = channel.transferFrom(source, position, TRANSFER_BYTES)) > 0) {
+                    position += transferred;
+                }
+                if(position != size){
+                    throw new IOException("文件字节数不一致 " + objectName + " " + position + "/" + size);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        forceDirectory(target.getParent());
+    }
+
+    @Override
+    public InputStream getObject(String bucketName, String objectName) throws IOException {
+        return Files.newInputStream(path(bucketName, objectName));
+    }
+
+    @Override
+    public InputStream getObject(String bucketName, String objectName, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(path(bucketName, objectName), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new LimitedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public ObjectInfo statObject(String bucketName, String objectName) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path(bucketName, objectName), BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        // 文件内容只会整体替换 字节数和修改时间可以代表文件内容 Content-Type 按照文件名判断
+        String etag = Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified);
+        return new ObjectInfo(objectName, attributes.size(), etag, null, new Date(lastModified));
+    }
+
+    @Override
+    public void removeObject(String bucketName, String objectName) throws IOException {
+        Path path = path(bucketName, objectName);
+        if(Files.deleteIfExists(path)){
+            forceDirectory(path.getParent());
+        }
+    }
+
+    @Override
+    public Path localPath(String bucketName, String objectName) {
+        return path(bucketName, objectName);
+    }
+
+    @Override
+    public String presignedUrl(String bucketName, String objectName, int expireSeconds) {
+        return null;
+    }
+
+    @Override
+    public String publicUrl(String bucketName, String objectName) {
+        return null;
+    }
+
+    /**
+     * 文件路径
+     *
+     * @param bucketName
+     * @param objectName
+     * @return
+     */
+    private Path path(String bucketName, String objectName) {
+        String hash = SecureUtil.sha1(checkName(objectName));
+        return root.resolve(checkName(bucketName)).resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(objectName);
+    }
+
+    /**
+     * 文件名来自请求参数 不允许包含路径
+     *
+     * @param name
+     * @return
+     */
+    private String checkName(String name) {
+        if(StrUtil.isBlank(name) || name.startsWith(".") || StrUtil.containsAny(name, "/", "\\", ":", "\0")){
+            throw new IllegalArgumentException("不允许的文件名 " + name);
+        }
+        return name;
+    }
+
+    /**
+     * 重命名、删除之后把目录刷到磁盘 断电之后文件不会丢失
+     * 有的系统不支持打开目录 只记录日志
+     *
+     * @param directory
+     */
+    private void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("目录刷新到磁盘失败 {}", directory, e);
+        }
+    }
+
+    /**
+     * 最多读取指定字节数的流
+     *
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(remaining <= 0){
+                return -1;
+            }
+            int read = super.read();
+            if(read >= 0){
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(remaining <= 0){
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if(read > 0){
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
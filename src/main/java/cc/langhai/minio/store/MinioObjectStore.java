@@ -0,0 +1,116 @@
+package cc.langhai.minio.store;
+
+import cc.langhai.minio.util.ObjectInfo;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import io.minio.MinioClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * minio 文件存储
+ * minio 客户端的各种异常统一转换为 IOException
+ *
+ * @author langhai
+ * @date 2023-01-19 19:30
+ */
+public class MinioObjectStore implements ObjectStore {
+
+    private final MinioClient client;
+
+    /**
+     * 生成签名地址使用的客户端 签名包含浏览器访问的地址
+     *
+     */
+    private final MinioClient presignClient;
+
+    /**
+     * 浏览器访问minio的地址
+     *
+     */
+    private final String externalEndpoint;
+
+    public MinioObjectStore(MinioClient client, MinioClient presignClient, String externalEndpoint) {
+        this.client = client;
+        this.presignClient = presignClient;
+        this.externalEndpoint = StrUtil.removeSuffix(externalEndpoint, "/");
+    }
+
+    @Override
+    public void createBucket(String bucketName) throws IOException {
+        call(() -> {
+            if (!client.bucketExists(bucketName)) {
+                client.makeBucket(bucketName);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void putObject(String bucketName, String objectName, InputStream inputStream, long size, String contentType) throws IOException {
+        call(() -> {
+            client.putObject(bucketName, objectName, inputStream, size, contentType);
+            return null;
+        });
+    }
+
+    @Override
+    public InputStream getObject(String bucketName, String objectName) throws IOException {
+        return call(() -> client.getObject(bucketName, objectName));
+    }
+
+    @Override
+    public InputStream getObject(String bucketName, String objectName, long offset, long length) throws IOException {
+        return call(() -> client.getObject(bucketName, objectName, offset, length));
+    }
+
+    @Override
+    public ObjectInfo statObject(String bucketName, String objectName) throws IOException {
+        return call(() -> ObjectInfo.of(client.statObject(bucketName, objectName)));
+    }
+
+    @Override
+    public void removeObject(String bucketName, String objectName) throws IOException {
+        call(() -> {
+            client.removeObject(bucketName, objectName);
+            return null;
+        });
+    }
+
+    @Override
+    public Path localPath(String bucketName, String objectName) {
+        return null;
+    }
+
+    @Override
+    public String presignedUrl(String bucketName, String objectName, int expireSeconds) throws IOException {
+        return call(() -> presignClient.presignedGetObject(bucketName, objectName, expireSeconds));
+    }
+
+    @Override
+    public String publicUrl(String bucketName, String objectName) {
+        return externalEndpoint + "/" + bucketName + "/" + URLUtil.encode(objectName);
+    }
+
+    private <T> T call(MinioCall<T> call) throws IOException {
+        try {
+            return call.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * minio 客户端调用
+     *
+     */
+    @FunctionalInterface
+    private interface MinioCall<T> {
+
+        T call() throws Exception;
+    }
+}
@@ -0,0 +1,107 @@
+package cc.langhai.minio.store;
+
+import cc.langhai.minio.util.ObjectInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * 文件存储
+ * 默认使用minio 单机部署时可以使用本地文件系统 不需要单独运行minio
+ *
+ * @author langhai
+ * @date 2023-01-19 19:20
+ */
+public interface ObjectStore {
+
+    /**
+     * 创建bucket 已经存在时不做处理
+     *
+     * @param bucketName
+     * @throws IOException
+     */
+    void createBucket(String bucketName) throws IOException;
+
+    /**
+     * 上传文件 同名文件直接覆盖
+     *
+     * @param bucketName
+     * @param objectName
+     * @param inputStream 文件内容 由调用方关闭
+     * @param size 字节数
+     * @param contentType
+     * @throws IOException
+     */
+    void putObject(String bucketName, String objectName, InputStream inputStream, long size, String contentType) throws IOException;
+
+    /**
+     * 获取文件
+     *
+     * @param bucketName
+     * @param objectName
+     * @return 二进制流
+     * @throws IOException
+     */
+    InputStream getObject(String bucketName, String objectName) throws IOException;
+
+    /**
+     * 获取文件的一段
+     *
+     * @param bucketName
+     * @param objectName
+     * @param offset 开始位置
+     * @param length 字节数
+     * @return 二进制流
+     * @throws IOException
+     */
+    InputStream getObject(String bucketName, String objectName, long offset, long length) throws IOException;
+
+    /**
+     * 获取文件信息
+     *
+     * @param bucketName
+     * @param objectName
+     * @return
+     * @throws IOException 文件不存在
+     */
+    ObjectInfo statObject(String bucketName, String objectName) throws IOException;
+
+    /**
+     * 删除文件 文件不存在时不做处理
+     *
+     * @param bucketName
+     * @param objectName
+     * @throws IOException
+     */
+    void removeObject(String bucketName, String objectName) throws IOException;
+
+    /**
+     * 文件在本机的路径 下载时由操作系统直接从文件发送到网络
+     *
+     * @param bucketName
+     * @param objectName
+     * @return 文件不在本机时返回null
+     */
+    Path localPath(String bucketName, String objectName);
+
+    /**
+     * 带签名的临时访问地址
+     *
+     * @param bucketName
+     * @param objectName
+     * @param expireSeconds 有效时间 秒
+     * @return 不支持签名地址时返回null
+     * @throws IOException
+     */
+    String presignedUrl(String bucketName, String objectName, int expireSeconds) throws IOException;
+
+    /**
+     * 浏览器直接访问存储服务的地址
+     *
+     * @param bucketName
+     * @param objectName
+     * @return 不支持直接访问时返回null
+     */
+    String publicUrl(String bucketName, String objectName);
+}
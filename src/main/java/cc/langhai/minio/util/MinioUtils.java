@@ -1,25 +1,44 @@
 package cc.langhai.minio.util;
 
+import cc.langhai.cache.ObjectDiskCache;
 import cc.langhai.domain.Image;
 import cc.langhai.exception.BusinessException;
+import cc.langhai.image.ImageOrientation;
+import cc.langhai.image.ImageVariant;
 import cc.langhai.minio.config.MinioProp;
+import cc.langhai.minio.store.ObjectStore;
+import cc.langhai.mq.config.MqConstants;
 import cc.langhai.response.MinioReturnCode;
 import cc.langhai.service.ImageService;
 import cc.langhai.utils.UserContext;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
 import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
 import com.alibaba.fastjson.JSONObject;
-import io.minio.MinioClient;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Date;
+import java.util.Iterator;
 
 /**
  * minio 工具类
+ * 文件读写交给 ObjectStore 可以使用minio或者本地文件系统
  *
  * @author langhai
  * @date 2023-01-02 22:20
@@ -29,13 +48,30 @@ import java.util.Date;
 public class MinioUtils {
  
     @Autowired
-    private MinioClient client;
+    private ObjectStore objectStore;
 
     @Autowired
     private MinioProp minioProp;
 
     @Autowired
     private ImageService imageService;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ObjectDiskCache objectDiskCache;
+
+    /**
+     * 签名地址缓存 有效时间过半之前重复使用同一个地址 浏览器也可以缓存重定向
+     *
+     */
+    private LRUCache<String, String> presignedUrls;
+
+    @PostConstruct
+    public void init() {
+        presignedUrls = CacheUtil.newLRUCache(10000, minioProp.getPresignExpireSeconds() * 1000L / 2);
+    }
  
     /**
      * 创建bucket
@@ -44,9 +80,7 @@ public class MinioUtils {
      */
     @SneakyThrows
     public void createBucket(String bucketName) {
-        if (!client.bucketExists(bucketName)) {
-            client.makeBucket(bucketName);
-        }
+        objectStore.createBucket(bucketName);
     }
  
     /**
@@ -72,15 +106,28 @@ public class MinioUtils {
 	        // 新的文件名 = 存储桶名称_时间戳.后缀名
 	        String fileName = bucketName + "_" + System.currentTimeMillis() + originalFilename.substring(originalFilename.lastIndexOf("."));
 	        // 开始上传
-	        client.putObject(bucketName, fileName, file.getInputStream(), file.getContentType());
+	        try (InputStream inputStream = file.getInputStream()) {
+	            objectStore.putObject(bucketName, fileName, inputStream, file.getSize(), file.getContentType());
+	        }
 
             Image image = new Image();
             image.setFileName(originalFilename);
             image.setMinioName(fileName);
             image.setAddTime(new Date());
             image.setFileSize(file.getSize());
+            int[] size = imageSize(file);
+            if(ObjectUtil.isNotNull(size)){
+                image.setWidth(size[0]);
+                image.setHeight(size[1]);
+            }
             image.setUserId(UserContext.getUserId());
             imageService.saveImage(image);
+            try {
+                // 异步生成缩略图等变体 这一步是可选操作 失败时页面使用原图
+                rabbitTemplate.convertAndSend(MqConstants.BLOGS_EXCHANGE, MqConstants.BLOGS_IMAGE_KEY, fileName);
+            } catch (AmqpException e) {
+                log.warn("发送图片变体消息失败 {}", fileName, e);
+            }
             // 返回的格式 http://127.0.0.1:xxxx/product/product_1672718197581.jpg
             // return minioProp.getEndpoint() + "/" + bucketName + "/" + fileName;
             return fileName;
@@ -91,6 +138,43 @@ public class MinioUtils {
     }
 
 
+    /**
+     * 读取图片宽高 只解析文件头 不解码整张图片
+     * 按照exif方向记录显示时的宽高
+     *
+     * @param file
+     * @return 宽高 无法识别的格式返回null
+     */
+    private int[] imageSize(MultipartFile file) {
+        int orientation;
+        try (InputStream inputStream = file.getInputStream()) {
+            orientation = ImageOrientation.read(inputStream);
+        } catch (IOException e) {
+            orientation = ImageOrientation.NORMAL;
+        }
+
+        try (InputStream inputStream = file.getInputStream();
+             ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if(!readers.hasNext()){
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+                if(ImageOrientation.swapsSize(orientation)){
+                    return new int[]{reader.getHeight(0), reader.getWidth(0)};
+                }
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            log.warn("读取图片宽高失败 {}", file.getOriginalFilename(), e);
+            return null;
+        }
+    }
+
     /**
      * 获取文件
      *
@@ -100,9 +184,102 @@ public class MinioUtils {
      */
     @SneakyThrows
     public InputStream getObject(String bucketName, String objectName) {
-        return client.getObject(bucketName, objectName);
+        return objectStore.getObject(bucketName, objectName);
+    }
+
+
+    /**
+     * 获取文件的一段
+     *
+     * @param bucketName bucket名称
+     * @param objectName 文件名称
+     * @param offset 开始位置
+     * @param length 字节数
+     * @return 二进制流
+     */
+    @SneakyThrows
+    public InputStream getObject(String bucketName, String objectName, long offset, long length) {
+        return objectStore.getObject(bucketName, objectName, offset, length);
+    }
+
+    /**
+     * 获取文件信息
+     *
+     * @param bucketName
+     * @param objectName
+     * @return 文件不存在时抛出异常
+     */
+    @SneakyThrows
+    public ObjectInfo statObject(String bucketName, String objectName) {
+        return objectStore.statObject(bucketName, objectName);
+    }
+
+    /**
+     * 上传文件内容
+     *
+     * @param bucketName
+     * @param objectName
+     * @param data
+     * @param contentType
+     */
+    @SneakyThrows
+    public void putObject(String bucketName, String objectName, byte[] data, String contentType) {
+        objectStore.putObject(bucketName, objectName, new ByteArrayInputStream(data), data.length, contentType);
+    }
+
+    /**
+     * 文件在本机的路径
+     *
+     * @param bucketName
+     * @param objectName
+     * @return 使用minio存储时返回null
+     */
+    public Path localPath(String bucketName, String objectName) {
+        return objectStore.localPath(bucketName, objectName);
     }
 
+    /**
+     * 图片的访问地址 配置了公开地址时直接访问存储服务 否则使用站内相对地址
+     *
+     * @param minioName
+     * @return
+     */
+    public String imageUrl(String minioName) {
+        String publicUrl = StrUtil.removeSuffix(minioProp.getPublicUrl(), "/");
+        if(StrUtil.isNotBlank(publicUrl)){
+            return publicUrl + "/" + URLUtil.encode(minioName);
+        }
+        return "/minio/download?minioName=" + URLUtil.encodeQuery(minioName);
+    }
+
+    /**
+     * 下载文件时重定向的地址
+     *
+     * @param bucketName
+     * @param objectName
+     * @return proxy 模式或者存储不支持重定向时返回null 由应用返回文件内容
+     */
+    @SneakyThrows
+    public String redirectUrl(String bucketName, String objectName) {
+        if(MinioProp.SERVE_PRESIGNED.equals(minioProp.getServeMode())){
+            String url = presignedUrls.get(objectName, false);
+            if(url == null){
+                url = objectStore.presignedUrl(bucketName, objectName, minioProp.getPresignExpireSeconds());
+                if(url != null){
+                    presignedUrls.put(objectName, url);
+                }
+            }
+            return url;
+        }
+        if(MinioProp.SERVE_PUBLIC.equals(minioProp.getServeMode())){
+            String publicUrl = StrUtil.removeSuffix(minioProp.getPublicUrl(), "/");
+            if(StrUtil.isBlank(publicUrl)){
+                return objectStore.publicUrl(bucketName, objectName);
+            }
+            return publicUrl + "/" + URLUtil.encode(objectName);
+        }
+        return null;
+    }
 
     /**
      * 删除文件
@@ -113,7 +290,17 @@ public class MinioUtils {
     @SneakyThrows
     public void deleteFile(String bucketName, String objectName){
         if(imageService.power(objectName)){
-            client.removeObject(bucketName, objectName);
+            Image image = imageService.getImage(objectName);
+            if(StrUtil.isNotBlank(image.getVariant())){
+                for (ImageVariant variant : ImageVariant.values()) {
+                    String variantName = variant.objectName(objectName, image.getVariant());
+                    objectStore.removeObject(bucketName, variantName);
+                    objectDiskCache.invalidate(bucketName, variantName);
+                }
+            }
+            objectStore.removeObject(bucketName, objectName);
+            // 各个节点的磁盘缓存不再返回已经删除的图片
+            objectDiskCache.invalidate(bucketName, objectName);
             imageService.delete(objectName);
         }else {
             throw new BusinessException(MinioReturnCode.MINIO_DELETE_FAIL_00004);
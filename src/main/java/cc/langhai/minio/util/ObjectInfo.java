@@ -0,0 +1,46 @@
+package cc.langhai.minio.util;
+
+import io.minio.ObjectStat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 存储的文件信息
+ *
+ * @author langhai
+ * @date 2023-01-19 15:10
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObjectInfo {
+
+    /**
+     * 文件名
+     *
+     */
+    private String name;
+
+    /**
+     * 文件字节数
+     *
+     */
+    private long length;
+
+    /**
+     * 文件内容的etag 不带引号
+     *
+     */
+    private String etag;
+
+    private String contentType;
+
+    private Date lastModified;
+
+    public static ObjectInfo of(ObjectStat stat) {
+        return new ObjectInfo(stat.name(), stat.length(), stat.etag(), stat.contentType(), stat.createdTime());
+    }
+}
@@ -0,0 +1,30 @@
+package cc.langhai.mq.config;
+
+import cc.langhai.cache.ArticlePageCache;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 文章页面缓存 mq Listener
+ * 每个节点使用自己的临时队列 都能收到文章新增、修改和删除的消息
+ *
+ * @author langhai
+ * @date 2023-01-17 16:55
+ */
+@Component
+public class ArticlePageListener {
+
+    @Autowired
+    private ArticlePageCache articlePageCache;
+
+    /**
+     * 文章变化 失效本节点缓存的页面
+     *
+     * @param id 文章id
+     */
+    @RabbitListener(queues = "#{articlePageQueue.name}")
+    public void listenArticleChange(Long id){
+        articlePageCache.invalidateLocal(id);
+    }
+}
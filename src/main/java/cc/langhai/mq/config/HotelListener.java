@@ -1,14 +1,29 @@
 package cc.langhai.mq.config;
 
+import cc.langhai.cache.SearchResultCache;
+import cc.langhai.config.system.SystemConfig;
 import cc.langhai.domain.Article;
+import cc.langhai.mapper.ArticleMapper;
+import cc.langhai.lucene.service.LuceneService;
 import cc.langhai.mq.service.ESService;
-import cc.langhai.service.ArticleService;
-import cn.hutool.core.util.ObjectUtil;
+import cc.langhai.suggest.SuggestIndex;
+import com.rabbitmq.client.Channel;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * mq Listener
@@ -16,6 +31,7 @@ import java.io.IOException;
  * @author langhai
  * @date 2023-01-09 10:47
  */
+@Slf4j
 @Component
 public class HotelListener {
 
@@ -23,34 +39,121 @@ public class HotelListener {
     private ESService esService;
 
     @Autowired
-    private ArticleService articleService;
+    private ArticleMapper articleMapper;
+
+    @Autowired
+    private LuceneService luceneService;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private SuggestIndex suggestIndex;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private SystemConfig systemConfig;
 
     /**
-     * 监听酒店新增或修改的业务
+     * 批量监听文章新增、修改和删除的业务
+     * 消息只携带文章id 以数据库当前状态为准 公开的写入索引库 其余的从索引库删除
+     * 因此同一批次里面同一篇文章的多条消息只需要处理一次
      *
-     * @param id 酒店id
+     * @param messages 文章id消息
+     * @param channel
      */
-    @RabbitListener(queues = MqConstants.BLOGS_INSERT_QUEUE)
-    public void listenHotelInsertOrUpdate(Long id) throws IOException {
-        Article article = articleService.getById(id);
-
-        // 文章更新 公开 ==>> 不公开
-        Article esServiceById = esService.getById(id);
-        if(ObjectUtil.isNotNull(esServiceById)){
-            esService.deleteById(id);
+    @RabbitListener(queues = {MqConstants.BLOGS_INSERT_QUEUE, MqConstants.BLOGS_DELETE_QUEUE},
+            containerFactory = "batchContainerFactory")
+    public void listenArticleSync(List<Message<Long>> messages, Channel channel) throws IOException {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Message<Long> message : messages) {
+            ids.add(message.getPayload());
         }
 
-        if(article.getPublicShow().equals(1)){
-            esService.insertById(id);
+        Set<Long> failIds;
+        try {
+            failIds = sync(ids);
+        } catch (Exception e) {
+            // 整批失败 全部延迟重试 直接重新入队会在es不可用期间不停地重复投递
+            log.error("批量同步文章索引失败", e);
+            for (Message<Long> message : messages) {
+                retry(message, channel);
+            }
+            return;
+        }
+
+        // 索引库已经变化并且刷新完成 作废搜索结果缓存 更新搜索提示
+        searchResultCache.bumpEpoch();
+        suggestIndex.publishArticles(ids);
+
+        for (Message<Long> message : messages) {
+            if(failIds.contains(message.getPayload())){
+                retry(message, channel);
+            }else {
+                channel.basicAck(deliveryTag(message), false);
+            }
         }
     }
 
     /**
-     * 监听酒店删除的业务
-     * @param id 酒店id
+     * 同步失败的消息放入重试队列 等待一段时间后重新投递 超过重试次数转入死信队列
+     * 新消息发送成功之后才确认原消息
+     *
+     * @param message
+     * @param channel
      */
-    @RabbitListener(queues = MqConstants.BLOGS_DELETE_QUEUE)
-    public void listenHotelDelete(Long id){
-        esService.deleteById(id);
+    private void retry(Message<Long> message, Channel channel) throws IOException {
+        Long id = message.getPayload();
+        Integer retried = message.getHeaders().get(MqConstants.RETRY_HEADER, Integer.class);
+        int times = retried == null ? 1 : retried + 1;
+        try {
+            if(times > systemConfig.getEsRetryTimes()){
+                log.error("文章索引同步重试{}次仍然失败 转入死信队列 文章id：{}", retried, id);
+                rabbitTemplate.convertAndSend(MqConstants.BLOGS_DEAD_QUEUE, id, m -> {
+                    m.getMessageProperties().setHeader(MqConstants.RETRY_HEADER, retried);
+                    return m;
+                });
+            }else {
+                log.warn("文章索引同步失败 第{}次重试 文章id：{}", times, id);
+                rabbitTemplate.convertAndSend(MqConstants.retryQueue(systemConfig.getEsRetryDelayMillis() * times), id, m -> {
+                    m.getMessageProperties().setHeader(MqConstants.RETRY_HEADER, times);
+                    return m;
+                });
+            }
+        } catch (Exception e) {
+            // mq本身不可用 原消息重新入队
+            log.error("文章索引同步重试消息发送失败 文章id：" + id, e);
+            channel.basicNack(deliveryTag(message), false, true);
+            return;
+        }
+        channel.basicAck(deliveryTag(message), false);
+    }
+
+    /**
+     * 同步到索引库
+     *
+     * @param ids
+     * @return 同步失败的文章id
+     */
+    private Set<Long> sync(Set<Long> ids) {
+        // 使用内嵌lucene搜索 不再同步es
+        if(luceneService.enabled()){
+            // 详情查询不带纯文本 使用索引查询
+            Map<Long, Article> articleMap = new HashMap<>();
+            for (Article article : articleMapper.listByIds(new ArrayList<>(ids))) {
+                articleMap.put(article.getId(), article);
+            }
+            for (Long id : ids) {
+                luceneService.save(id, articleMap.get(id));
+            }
+            return Collections.emptySet();
+        }
+        return esService.bulkSync(ids);
+    }
+
+    private long deliveryTag(Message<Long> message) {
+        return message.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package cc.langhai.mq.config;
+
+import cc.langhai.image.ImageVariantService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 图片变体 mq Listener
+ * 图片上传之后异步生成缩略图、中图、大图以及占位图
+ *
+ * @author langhai
+ * @date 2023-01-19 10:40
+ */
+@Slf4j
+@Component
+public class ImageVariantListener {
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    /**
+     * 生成图片变体 失败时页面继续使用原图 不重新入队
+     *
+     * @param minioName 原图文件名
+     */
+    @RabbitListener(queues = MqConstants.BLOGS_IMAGE_QUEUE)
+    public void listenImageUpload(String minioName){
+        try {
+            imageVariantService.process(minioName);
+        } catch (Exception e) {
+            log.error("生成图片变体失败 {}", minioName, e);
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package cc.langhai.mq.config;
 
+import cc.langhai.config.system.SystemConfig;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * rabbitMQ 配置类 绑定关系
  *
@@ -39,4 +51,86 @@ public class MqConfig {
     public Binding deleteQueueBinding(){
         return BindingBuilder.bind(deleteQueue()).to(topicExchange()).with(MqConstants.BLOGS_DELETE_KEY);
     }
-}
\ No newline at end of file
+
+    @Bean
+    public Queue imageQueue(){
+        return new Queue(MqConstants.BLOGS_IMAGE_QUEUE, true);
+    }
+
+    @Bean
+    public Binding imageQueueBinding(){
+        return BindingBuilder.bind(imageQueue()).to(topicExchange()).with(MqConstants.BLOGS_IMAGE_KEY);
+    }
+
+    /**
+     * 同步索引失败的重试队列 第n次重试进入等待 esRetryDelayMillis * n 毫秒的队列
+     * 队列设置统一的过期时间 mq只在队首过期消息 同一个队列里面等待时间相同才不会互相阻塞
+     * 过期后通过默认交换机转回新增和修改的队列 监听器以数据库当前状态为准 删除消息也可以走这个队列
+     *
+     * @param systemConfig
+     * @return
+     */
+    @Bean
+    public Declarables retryQueues(SystemConfig systemConfig){
+        List<Declarable> queues = new ArrayList<>();
+        for (int times = 1; times <= systemConfig.getEsRetryTimes(); times++) {
+            long delay = systemConfig.getEsRetryDelayMillis() * times;
+            queues.add(QueueBuilder.durable(MqConstants.retryQueue(delay))
+                    .ttl((int) delay)
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(MqConstants.BLOGS_INSERT_QUEUE)
+                    .build());
+        }
+        return new Declarables(queues);
+    }
+
+    @Bean
+    public Queue deadQueue(){
+        return new Queue(MqConstants.BLOGS_DEAD_QUEUE, true);
+    }
+
+    /**
+     * 文章页面缓存失效使用的临时队列 每个节点一个 断开连接后自动删除
+     *
+     * @return
+     */
+    @Bean
+    public Queue articlePageQueue(){
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding articlePageInsertBinding(){
+        return BindingBuilder.bind(articlePageQueue()).to(topicExchange()).with(MqConstants.BLOGS_INSERT_KEY);
+    }
+
+    @Bean
+    public Binding articlePageDeleteBinding(){
+        return BindingBuilder.bind(articlePageQueue()).to(topicExchange()).with(MqConstants.BLOGS_DELETE_KEY);
+    }
+
+    /**
+     * 批量消费的监听容器 消息凑够 esBatchSize 条或者等待 esBatchWaitMillis 毫秒后一起处理
+     * 手动确认 处理成功之后才ack
+     *
+     * @param configurer
+     * @param connectionFactory
+     * @param systemConfig
+     * @return
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+                                                                      ConnectionFactory connectionFactory,
+                                                                      SystemConfig systemConfig){
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(systemConfig.getEsBatchSize());
+        factory.setReceiveTimeout(systemConfig.getEsBatchWaitMillis());
+        // 预取数量不能小于批次大小 否则永远凑不满一批
+        factory.setPrefetchCount(Math.max(systemConfig.getEsBatchSize(), 250));
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+}
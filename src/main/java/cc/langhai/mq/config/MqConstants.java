@@ -32,4 +32,40 @@ public class MqConstants {
      * 删除的RoutingKey
      */
     public final static String BLOGS_DELETE_KEY = "blogs.delete";
-}
\ No newline at end of file
+
+    /**
+     * 生成图片变体的队列
+     */
+    public final static String BLOGS_IMAGE_QUEUE = "blogs.image.queue";
+
+    /**
+     * 图片上传的RoutingKey
+     */
+    public final static String BLOGS_IMAGE_KEY = "blogs.image";
+
+    /**
+     * 同步索引失败等待重试的队列前缀 没有消费者 消息过期后转回新增和修改的队列
+     * 每一级重试一个队列 队列名称带上等待时间 修改等待时间后使用新的队列
+     */
+    public final static String BLOGS_RETRY_QUEUE = "blogs.retry.";
+
+    /**
+     * 多次重试仍然失败的文章id 留给人工处理
+     */
+    public final static String BLOGS_DEAD_QUEUE = "blogs.dead.queue";
+
+    /**
+     * 已经重试的次数
+     */
+    public final static String RETRY_HEADER = "x-blogs-retry";
+
+    /**
+     * 等待指定时间的重试队列名称
+     *
+     * @param delayMillis 等待时间 毫秒
+     * @return
+     */
+    public static String retryQueue(long delayMillis) {
+        return BLOGS_RETRY_QUEUE + delayMillis + "ms.queue";
+    }
+}
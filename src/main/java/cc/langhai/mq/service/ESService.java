@@ -1,8 +1,7 @@
 package cc.langhai.mq.service;
 
-import cc.langhai.domain.Article;
-
-import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
 
 /**
  * es搜索引擎 service接口
@@ -13,24 +12,11 @@ import java.io.IOException;
 public interface ESService {
 
     /**
-     * 删除索引库当中的文档
-     *
-     * @param id
-     */
-    void deleteById(Long id);
-
-    /**
-     * 增加 / 更新 索引库当中的文档
-     *
-     * @param id
-     */
-    void insertById(Long id);
-
-    /**
-     * id 查询文档
+     * 批量同步文章到索引库 一次查询数据库 一次bulk请求
+     * 文章存在并且公开的写入文档 其余的删除文档
      *
-     * @param id
-     * @return
+     * @param ids 文章id
+     * @return 同步失败的文章id
      */
-    Article getById(Long id) throws IOException;
+    Set<Long> bulkSync(Collection<Long> ids);
 }
@@ -1,15 +1,20 @@
 package cc.langhai.mq.service.impl;
 
 import cc.langhai.domain.Article;
+import cc.langhai.es.config.ESConstants;
+import cc.langhai.es.util.ESDocumentUtil;
 import cc.langhai.exception.BusinessException;
+import cc.langhai.mapper.ArticleMapper;
 import cc.langhai.mq.service.ESService;
 import cc.langhai.response.ESReturnCode;
-import cc.langhai.service.ArticleService;
-import com.alibaba.fastjson.JSON;
+import cn.hutool.core.collection.CollectionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
-import org.elasticsearch.action.get.GetRequest;
-import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.xcontent.XContentType;
@@ -17,6 +22,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * es搜索引擎 service接口 实现类
@@ -24,6 +36,7 @@ import java.io.IOException;
  * @author langhai
  * @date 2023-01-09 10:39
  */
+@Slf4j
 @Service
 public class ESServiceImpl implements ESService {
 
@@ -31,47 +44,56 @@ public class ESServiceImpl implements ESService {
     private RestHighLevelClient restHighLevelClient;
 
     @Autowired
-    private ArticleService articleService;
+    private ArticleMapper articleMapper;
 
     @Override
-    public void deleteById(Long id) {
-        try {
-            // 1.准备Request
-            DeleteRequest request = new DeleteRequest("langhaiblogs", id.toString());
-            // 2.发送请求
-            restHighLevelClient.delete(request, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            throw new BusinessException(ESReturnCode.ES_DOC_DELETE_FAIL_00000);
+    public Set<Long> bulkSync(Collection<Long> ids) {
+        Set<Long> failIds = new HashSet<>();
+        if(CollectionUtil.isEmpty(ids)){
+            return failIds;
         }
-    }
 
-    @Override
-    public void insertById(Long id) {
-        try {
-            // 0.根据id查询文章数据
-            Article article = articleService.getById(id);
+        // 0.一次查询所有文章数据
+        Map<Long, Article> articleMap = new HashMap<>();
+        for (Article article : articleMapper.listByIds(new ArrayList<>(ids))) {
+            articleMap.put(article.getId(), article);
+        }
+
+        // 1.准备BulkRequest 公开的文章写入 不存在或者不公开的删除
+        BulkRequest request = new BulkRequest();
+        List<Long> requestIds = new ArrayList<>();
+        for (Long id : ids) {
+            Article article = articleMap.get(id);
+            if(article != null && Integer.valueOf(1).equals(article.getPublicShow())){
+                request.add(new IndexRequest(ESConstants.INDEX_ALIAS)
+                        .id(id.toString())
+                        .source(ESDocumentUtil.toSource(article), XContentType.JSON));
+            }else {
+                request.add(new DeleteRequest(ESConstants.INDEX_ALIAS, id.toString()));
+            }
+            requestIds.add(id);
+        }
+
+        // 等待写入的文档可以被搜索到再返回 之后作废搜索结果缓存 避免刷新之前的旧结果按照新版本缓存
+        request.setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
 
-            // 1.准备Request对象
-            IndexRequest request = new IndexRequest("langhaiblogs").id(article.getId().toString());
-            // 2.准备Json文档
-            request.source(JSON.toJSONString(article), XContentType.JSON);
-            // 3.发送请求
-            restHighLevelClient.index(request, RequestOptions.DEFAULT);
+        // 2.发送请求
+        BulkResponse response;
+        try {
+            response = restHighLevelClient.bulk(request, RequestOptions.DEFAULT);
         } catch (IOException e) {
             throw new BusinessException(ESReturnCode.ES_DOC_UPDATE_FAIL_00001);
         }
-    }
 
-    @Override
-    public Article getById(Long id) throws IOException {
-        // 1.准备Request
-        GetRequest request = new GetRequest("langhaiblogs", id.toString());
-        // 2.发送请求，得到响应
-        GetResponse response = restHighLevelClient.get(request, RequestOptions.DEFAULT);
-        // 3.解析响应结果
-        String json = response.getSourceAsString();
-
-        Article article = JSON.parseObject(json, Article.class);
-        return article;
+        // 3.逐条检查结果 删除不存在的文档不算失败
+        if(response.hasFailures()){
+            for (BulkItemResponse item : response.getItems()) {
+                if(item.isFailed()){
+                    log.error("文章{}同步es失败：{}", requestIds.get(item.getItemId()), item.getFailureMessage());
+                    failIds.add(requestIds.get(item.getItemId()));
+                }
+            }
+        }
+        return failIds;
     }
 }
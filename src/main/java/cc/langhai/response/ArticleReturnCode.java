@@ -20,6 +20,8 @@ public enum ArticleReturnCode implements ReturnCode{
     ARTICLE_DELETE_OK_00005(200, "文章逻辑删除成功"),
 
     ARTICLE_DELETE_PARAM_FAIL_00006(500, "文章删除参数校验失败。"),
+
+    ARTICLE_SUGGEST_OK_00007(200, "搜索提示查询成功"),
     ;
 
     private Integer code;
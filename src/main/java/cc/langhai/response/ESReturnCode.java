@@ -10,7 +10,9 @@ public enum ESReturnCode implements ReturnCode{
 
     ES_DOC_DELETE_FAIL_00000(500, "数据文档删除失败！！！"),
 
-    ES_DOC_UPDATE_FAIL_00001(500, "数据文档新增/修改失败！！！")
+    ES_DOC_UPDATE_FAIL_00001(500, "数据文档新增/修改失败！！！"),
+
+    ES_SEARCH_FAIL_00002(500, "文章搜索失败！！！")
 
     ;
 
@@ -1,10 +1,11 @@
 package cc.langhai.service;
 
 import cc.langhai.domain.Article;
-import com.github.pagehelper.PageInfo;
+import cc.langhai.domain.ArticleSummary;
+import cc.langhai.utils.CursorPage;
 
 import javax.servlet.http.HttpSession;
-import java.io.IOException;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 
@@ -28,11 +29,15 @@ public interface ArticleService {
     void issue(String title, String content, String publicShow, String html, String label);
 
     /**
-     * 获取用户发布的所有文章
+     * 分页获取用户发布的文章
+     * cursor 不为空时使用游标分页 否则按照页数分页
      *
+     * @param page
+     * @param size
+     * @param cursor
      * @return
      */
-    List<Article> getAllArticle();
+    CursorPage<ArticleSummary> getAllArticle(Integer page, Integer size, String cursor);
 
     /**
      * 获取一篇文章
@@ -49,7 +54,7 @@ public interface ArticleService {
      * @param articleList
      * @return
      */
-    List<Article> getArticleHeat(List<Article> articleList);
+    List<ArticleSummary> getArticleHeat(List<ArticleSummary> articleList);
 
     /**
      * 获取文章热度并且增加一个热度
@@ -88,18 +93,30 @@ public interface ArticleService {
      */
     void deleteArticle(Long id);
 
+    /**
+     * 图片生成变体之后 重新处理图片上传之后保存的文章
+     * 文章通常在图片上传之后很快发布 保存时变体还没有生成 没有加上srcset
+     *
+     * @param userId 上传图片的用户
+     * @param since 图片上传时间
+     * @param minioName 图片文件名
+     */
+    void refreshArticleImages(Long userId, Date since, String minioName);
+
     /**
      * 文章搜索功能
+     * cursor 不为空时使用游标分页 否则按照页数分页
      *
      * @return
      */
-    PageInfo<Article> search(Integer page, Integer size, String searchArticleStr);
+    CursorPage<ArticleSummary> search(Integer page, Integer size, String cursor, String searchArticleStr);
 
     /**
      * 文章搜索功能 用于ES搜索引擎
+     * 携带上一页返回的 nextCursor 时使用 search_after 翻页 否则按照页数翻页
      *
-     * @return
+     * @return list 文章列表 pages 总页数 nextCursor 下一页游标
      */
-    HashMap<String, Object> searchES(Integer page, Integer size, String searchArticleStr) throws IOException;
+    HashMap<String, Object> searchES(Integer page, Integer size, String cursor, String searchArticleStr);
 
 }
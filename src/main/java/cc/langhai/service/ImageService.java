@@ -1,8 +1,7 @@
 package cc.langhai.service;
 
 import cc.langhai.domain.Image;
-
-import java.util.List;
+import cc.langhai.utils.CursorPage;
 
 /**
  * 图片 service接口
@@ -26,12 +25,16 @@ public interface ImageService {
     void saveImage(Image image);
 
     /**
-     * 获取用户所有图片
+     * 分页获取用户图片
+     * cursor 不为空时使用游标分页 否则按照页数分页
      *
      * @param userId
+     * @param page
+     * @param size
+     * @param cursor
      * @return
      */
-    List<Image> getAllImageByUser(Long userId);
+    CursorPage<Image> getAllImageByUser(Long userId, Integer page, Integer size, String cursor);
 
 
     /**
@@ -48,6 +51,14 @@ public interface ImageService {
      */
     boolean power(String objectName);
 
+    /**
+     * 获取单张图片
+     *
+     * @param objectName
+     * @return
+     */
+    Image getImage(String objectName);
+
     /**
      * 删除图片
      *
@@ -1,8 +1,8 @@
 package cc.langhai.service;
 
-import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
 import cc.langhai.domain.Label;
-import com.github.pagehelper.PageInfo;
+import cc.langhai.utils.CursorPage;
 
 import java.util.List;
 
@@ -46,13 +46,15 @@ public interface LabelService {
 
     /**
      * 用户该标签下所有的文章
+     * cursor 不为空时使用游标分页 否则按照页数分页
      *
      * @param page
      * @param size
+     * @param cursor
      * @param id
      * @return
      */
-    PageInfo<Article> article(Integer page, Integer size, Long id);
+    CursorPage<ArticleSummary> article(Integer page, Integer size, String cursor, Long id);
 
     /**
      * id获取标签内容
@@ -1,11 +1,23 @@
 package cc.langhai.service.impl;
 
+import cc.langhai.cache.ArticleNearCache;
+import cc.langhai.cache.PageCountCache;
+import cc.langhai.cache.SearchResultCache;
 import cc.langhai.config.constant.ArticleConstant;
 import cc.langhai.config.constant.LabelConstant;
 import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
 import cc.langhai.domain.Label;
 import cc.langhai.domain.User;
+import cc.langhai.es.config.ESConstants;
+import cc.langhai.es.config.ESProp;
+import cc.langhai.es.service.PointInTimeService;
+import cc.langhai.es.service.impl.PointInTimeServiceImpl;
+import cc.langhai.es.util.ESDocumentUtil;
 import cc.langhai.exception.BusinessException;
+import cc.langhai.heat.ArticleHeatCounter;
+import cc.langhai.html.ArticleHtmlProcessor;
+import cc.langhai.lucene.service.LuceneService;
 import cc.langhai.mapper.ArticleMapper;
 import cc.langhai.mapper.LabelMapper;
 import cc.langhai.mq.config.MqConstants;
@@ -13,35 +25,55 @@ import cc.langhai.response.ArticleReturnCode;
 import cc.langhai.response.LabelReturnCode;
 import cc.langhai.service.ArticleService;
 import cc.langhai.service.LabelService;
+import cc.langhai.utils.ArticleTextUtil;
+import cc.langhai.utils.CursorPage;
 import cc.langhai.utils.DateUtil;
+import cc.langhai.utils.PageCursor;
+import cc.langhai.utils.SearchCursor;
 import cc.langhai.utils.UserContext;
+import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson.JSON;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
-import com.github.pagehelper.PageHelper;
-import com.github.pagehelper.PageInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Cancellable;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 /**
  * article service 实现类
@@ -49,6 +81,7 @@ import java.util.concurrent.TimeUnit;
  * @author langhai
  * @date 2022-12-24 16:10
  */
+@Slf4j
 @Service
 public class ArticleServiceImpl implements ArticleService {
 
@@ -70,6 +103,30 @@ public class ArticleServiceImpl implements ArticleService {
     @Autowired
     private RabbitTemplate rabbitTemplate;
 
+    @Autowired
+    private ArticleHeatCounter articleHeatCounter;
+
+    @Autowired
+    private ArticleNearCache articleNearCache;
+
+    @Autowired
+    private PageCountCache pageCountCache;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private LuceneService luceneService;
+
+    @Autowired
+    private ESProp esProp;
+
+    @Autowired
+    private ArticleHtmlProcessor articleHtmlProcessor;
+
+    @Autowired
+    private PointInTimeService pointInTimeService;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void issue(String title, String content, String publicShow, String html, String label) {
@@ -114,11 +171,15 @@ public class ArticleServiceImpl implements ArticleService {
         article.setUserId(userId);
         article.setLabelId(labelMysql.getId());
         article.setTitle(title);
-        article.setHtml(html);
+        // 过滤html 改写图片地址
+        article.setHtml(articleHtmlProcessor.process(html));
+        // 提取纯文本、摘要、字数、阅读时长以及第一张图片
+        ArticleTextUtil.enrich(article);
         article.setPublicShow("on".equals(publicShow) ? 1 : 0);
         article.setDeleteFlag(0);
         article.setAddTime(new Date());
         articleMapper.insertArticle(article);
+        pageCountCache.remove("article:user:" + userId);
 
         // 公开的文章
         if(article.getPublicShow().equals(1)){
@@ -128,57 +189,85 @@ public class ArticleServiceImpl implements ArticleService {
     }
 
     @Override
-    public List<Article> getAllArticle() {
+    public CursorPage<ArticleSummary> getAllArticle(Integer page, Integer size, String cursor) {
         Long userId = UserContext.getUserId();
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        int offset = pageCursor == null ? (page - 1) * size : 0;
+
+        // 多查询一条 用来判断是否还有下一页
+        List<ArticleSummary> allArticle = articleMapper.getAllArticle(userId, pageCursor, offset, size + 1);
+        long total = pageCountCache.get("article:user:" + userId, () -> articleMapper.countAllArticle(userId));
 
-        List<Article> allArticle = articleMapper.getAllArticle(userId);
-        return allArticle;
+        return CursorPage.of(allArticle, size, page, pageCursor, total, ArticleSummary::getAddTime, ArticleSummary::getId);
     }
 
     @Override
     public Article getById(Long id) {
-        Article article = articleMapper.getById(id);
+        if(ObjectUtil.isNull(id)){
+            return null;
+        }
+
+        // 先查询本地缓存 没有再查询数据库
+        Article article = articleNearCache.get(id);
+        if(ObjectUtil.isNotNull(article)){
+            return article;
+        }
+
+        // 读取数据库之前记录失效版本 读取期间文章被修改时不放入缓存
+        long stamp = articleNearCache.stamp();
+        article = articleMapper.getById(id);
+        articleNearCache.put(article, stamp);
         return article;
     }
 
     @Override
-    public List<Article> getArticleHeat(List<Article> articleList) {
-        if(CollectionUtil.isNotEmpty(articleList)){
-            for (Article article : articleList) {
-                // 获取文章热度值
-                String heat = redisTemplate.opsForValue().get("article" + article.getAuthor() + article.getId());
-
-                if(StrUtil.isBlank(heat)){
-                    // 存储到redis当中
-                    redisTemplate.opsForValue().set("article" + article.getAuthor() + article.getId(),
-                            "1", 7 * 24 * 60, TimeUnit.MINUTES);
-                    article.setHeat("1");
-                }else {
-                    article.setHeat(heat);
-                }
+    public List<ArticleSummary> getArticleHeat(List<ArticleSummary> articleList) {
+        if(CollectionUtil.isEmpty(articleList)){
+            return articleList;
+        }
+
+        // 整页文章的热度值一次 MGET 获取 避免每篇文章一次网络往返
+        List<String> keys = articleList.stream()
+                .map(article -> heatKey(article.getAuthor(), article.getId())).collect(Collectors.toList());
+        List<String> heatList = redisTemplate.opsForValue().multiGet(keys);
+
+        // 不存在热度值的文章 通过管道一次性写入redis
+        List<String> missKeys = new ArrayList<>();
+        for (int i = 0; i < articleList.size(); i++) {
+            String heat = CollectionUtil.isEmpty(heatList) ? null : heatList.get(i);
+            if(StrUtil.isBlank(heat)){
+                missKeys.add(keys.get(i));
+                articleList.get(i).setHeat("1");
+            }else {
+                // 加上本地还没有写回redis的热度增量
+                long pending = articleHeatCounter.pending(keys.get(i));
+                articleList.get(i).setHeat(String.valueOf(Long.valueOf(heat) + pending));
             }
         }
 
+        if(CollectionUtil.isNotEmpty(missKeys)){
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                    for (String missKey : missKeys) {
+                        redisOperations.opsForValue().setIfAbsent(missKey, "1", ArticleHeatCounter.ARTICLE_HEAT_EXPIRE_MINUTES, TimeUnit.MINUTES);
+                    }
+                    return null;
+                }
+            });
+        }
+
         return articleList;
     }
 
     @Override
     public Article getArticleHeat(Article article) {
         if(ObjectUtil.isNotNull(article)){
-            String heat = redisTemplate.opsForValue().get("article" + article.getAuthor() + article.getId());
-
-            if(StrUtil.isBlank(heat)){
-                // 存储到redis当中
-                redisTemplate.opsForValue().set("article" + article.getAuthor() + article.getId(),
-                        "1", 7 * 24 * 60, TimeUnit.MINUTES);
-                article.setHeat("1");
-            }else {
-                Long heatLong = Long.valueOf(heat);
-                Long heatLater = heatLong + 1;
-                redisTemplate.opsForValue().set("article" + article.getAuthor() + article.getId(),
-                        heatLater.toString(), 7 * 24 * 60, TimeUnit.MINUTES);
-                article.setHeat(heatLater.toString());
-            }
+            // 本地累加热度 由计数器定时批量写回redis
+            long heat = articleHeatCounter.increment(heatKey(article.getAuthor(), article.getId()));
+            article.setHeat(String.valueOf(heat));
         }
         return article;
     }
@@ -250,10 +339,14 @@ public class ArticleServiceImpl implements ArticleService {
         // 将文章更新到数据库
         article.setLabelId(labelMysql.getId());
         article.setTitle(title);
-        article.setHtml(html);
+        // 过滤html 改写图片地址
+        article.setHtml(articleHtmlProcessor.process(html));
+        // 提取纯文本、摘要、字数、阅读时长以及第一张图片
+        ArticleTextUtil.enrich(article);
         article.setPublicShow("on".equals(publicShow) ? 1 : 0);
         article.setUpdateTime(new Date());
         articleMapper.updateArticle(article);
+        articleNearCache.invalidate(article.getId());
 
 
         // 利用消息队列发送消息 同步到es搜索引擎 这一步是可选操作
@@ -284,6 +377,8 @@ public class ArticleServiceImpl implements ArticleService {
         article.setDeleteFlag(1);
         article.setUpdateTime(new Date());
         articleMapper.deleteArticle(article);
+        articleNearCache.invalidate(article.getId());
+        pageCountCache.remove("article:user:" + userId);
 
         if(article.getPublicShow().equals(1)){
             // 利用消息队列发送消息 同步到es搜索引擎 这一步是可选操作
@@ -292,35 +387,243 @@ public class ArticleServiceImpl implements ArticleService {
     }
 
     @Override
-    public PageInfo<Article> search(Integer page, Integer size, String searchArticleStr) {
-        // 开启分页助手
-        PageHelper.startPage(page, size);
+    public void refreshArticleImages(Long userId, Date since, String minioName) {
+        if(ObjectUtil.isNull(userId) || ObjectUtil.isNull(since) || StrUtil.isBlank(minioName)){
+            return;
+        }
+
+        for (Article article : articleMapper.listArticleBodySince(userId, since)) {
+            if(!StrUtil.contains(article.getHtml(), minioName)){
+                continue;
+            }
+            String html = articleHtmlProcessor.process(article.getHtml());
+            if(StrUtil.equals(html, article.getHtml())){
+                continue;
+            }
+
+            // 修改更新时间 页面ETag和页面缓存随之变化
+            Date oldUpdateTime = article.getUpdateTime();
+            article.setHtml(html);
+            ArticleTextUtil.enrich(article);
+            article.setUpdateTime(new Date());
+            if(articleMapper.refreshArticleHtml(article, oldUpdateTime) == 0){
+                // 作者已经重新编辑 编辑保存时已经使用了生成好的变体
+                continue;
+            }
+            articleNearCache.invalidate(article.getId());
+            if(Integer.valueOf(1).equals(article.getPublicShow())){
+                // 第一张图片变为变体地址 同步到es搜索引擎
+                rabbitTemplate.convertAndSend(MqConstants.BLOGS_EXCHANGE, MqConstants.BLOGS_INSERT_KEY, article.getId());
+            }
+        }
+    }
+
+    @Override
+    public CursorPage<ArticleSummary> search(Integer page, Integer size, String cursor, String searchArticleStr) {
+        CursorPage<ArticleSummary> cursorPage = searchResultCache.get("db", searchArticleStr, page, size, cursor,
+                () -> searchDB(page, size, cursor, searchArticleStr));
 
-        List<Article> allArticlePublicShow = articleMapper.getAllArticlePublicShow(searchArticleStr);
-        PageInfo<Article> pageInfo = new PageInfo<>(allArticlePublicShow);
+        // 缓存的结果被多个请求共享 复制之后再填充热度
+        return CursorPage.copyOf(cursorPage, article -> BeanUtil.copyProperties(article, ArticleSummary.class));
+    }
+
+    private CursorPage<ArticleSummary> searchDB(Integer page, Integer size, String cursor, String searchArticleStr) {
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        int offset = pageCursor == null ? (page - 1) * size : 0;
+
+        // 多查询一条 用来判断是否还有下一页
+        List<ArticleSummary> allArticlePublicShow = articleMapper.getAllArticlePublicShow(searchArticleStr, pageCursor, offset, size + 1);
+        long total = pageCountCache.get("article:public:" + StrUtil.nullToEmpty(searchArticleStr),
+                () -> articleMapper.countArticlePublicShow(searchArticleStr));
 
-        return pageInfo;
+        return CursorPage.of(allArticlePublicShow, size, page, pageCursor, total, ArticleSummary::getAddTime, ArticleSummary::getId);
     }
 
     @Override
-    public HashMap<String, Object> searchES(Integer page, Integer size, String searchArticleStr) throws IOException {
+    public HashMap<String, Object> searchES(Integer page, Integer size, String cursor, String searchArticleStr) {
+        HashMap<String, Object> hashMap = searchResultCache.get(luceneService.enabled() ? "lucene" : "es",
+                searchArticleStr, page, size, cursor, () -> searchIndex(page, size, cursor, searchArticleStr));
+
+        // 缓存的结果被多个请求共享 复制之后再填充热度
+        HashMap<String, Object> copy = new HashMap<>(hashMap);
+        copy.remove(SearchResultCache.DEGRADED);
+        copy.put("list", copySummaries((List<?>) hashMap.get("list")));
+        return copy;
+    }
+
+    /**
+     * 复制文章列表
+     *
+     * @param list
+     * @return
+     */
+    private List<ArticleSummary> copySummaries(List<?> list) {
+        return list.stream().map(article -> BeanUtil.copyProperties(article, ArticleSummary.class)).collect(Collectors.toList());
+    }
+
+    private HashMap<String, Object> searchIndex(Integer page, Integer size, String cursor, String searchArticleStr) {
+        // 开启内嵌lucene搜索时 不再请求es
+        if(luceneService.enabled()){
+            return luceneService.search(page, size, searchArticleStr);
+        }
+
+        try {
+            return searchES(page, size, SearchCursor.decode(cursor, searchArticleStr), searchArticleStr);
+        } catch (IOException | ElasticsearchException e) {
+            // es超时或者不可用 使用数据库搜索
+            log.warn("es搜索失败 使用数据库搜索：{}", e.getMessage());
+            CursorPage<ArticleSummary> cursorPage = search(page, size, null, searchArticleStr);
+            HashMap<String, Object> hashMap = new HashMap<>();
+            hashMap.put("list", cursorPage.getList());
+            hashMap.put("pages", cursorPage.getPages());
+            // 不按照es的搜索结果缓存 es恢复之后马上重新使用es搜索
+            hashMap.put(SearchResultCache.DEGRADED, true);
+            return hashMap;
+        }
+    }
+
+    private HashMap<String, Object> searchES(Integer page, Integer size, SearchCursor searchCursor, String searchArticleStr) throws IOException {
+        if(ObjectUtil.isNull(searchCursor)){
+            return searchES(page, size, null, null, searchArticleStr);
+        }
+
+        // 从第二页开始使用快照 保证连续翻页时结果不会因为文章变化而重复或者遗漏
+        String pitId = StrUtil.isNotBlank(searchCursor.getPitId()) ? searchCursor.getPitId() : pointInTimeService.acquire(searchArticleStr);
+        try {
+            return searchES(page, size, searchCursor, pitId, searchArticleStr);
+        } catch (ElasticsearchStatusException e) {
+            // 快照过期 直接查询索引
+            if(pitId == null || e.status() != RestStatus.NOT_FOUND){
+                throw e;
+            }
+            pointInTimeService.close(searchArticleStr, pitId);
+            return searchES(page, size, searchCursor, null, searchArticleStr);
+        }
+    }
+
+    /**
+     * 执行es搜索 按照 (_score, addTime, id) 排序
+     *
+     * @param page
+     * @param size
+     * @param searchCursor 为空时按照页数查询
+     * @param pitId 为空时直接查询索引
+     * @param searchArticleStr
+     * @return
+     * @throws IOException
+     */
+    private HashMap<String, Object> searchES(Integer page, Integer size, SearchCursor searchCursor,
+                                             String pitId, String searchArticleStr) throws IOException {
         // 1.准备Request
-        SearchRequest request = new SearchRequest("langhaiblogs");
+        SearchRequest request;
+        if(StrUtil.isNotBlank(pitId)){
+            request = new SearchRequest();
+            request.source().pointInTimeBuilder(new PointInTimeBuilder(pitId).setKeepAlive(PointInTimeServiceImpl.KEEP_ALIVE));
+        }else {
+            request = new SearchRequest(ESConstants.INDEX_ALIAS);
+        }
         // 2.准备DSL
         // 2.1.query
         if(StrUtil.isNotBlank(searchArticleStr)){
+            // 正文权重最低 与内嵌lucene搜索的权重保持一致
             request.source()
-                    .query(QueryBuilders.multiMatchQuery(searchArticleStr, "title", "author", "labelContent"));
+                    .query(QueryBuilders.multiMatchQuery(searchArticleStr)
+                            .field("title", 3.0f)
+                            .field("labelContent", 2.0f)
+                            .field("author", 2.0f)
+                            .field("plainText", 1.0f));
         }else {
             request.source()
                     .query(QueryBuilders.matchAllQuery());
         }
-        // 2.2.分页 from、size
-        request.source().from((page - 1) * size).size(size);
+        // 2.2.只返回列表展示需要的字段
+        request.source().fetchSource(ESDocumentUtil.SOURCE_INCLUDES, null);
+        // 2.3.排序 id 保证顺序稳定
+        request.source()
+                .sort(SortBuilders.scoreSort())
+                .sort(SortBuilders.fieldSort("addTime").order(SortOrder.DESC).unmappedType("long"))
+                .sort(SortBuilders.fieldSort("id").order(SortOrder.DESC));
+        // 2.4.分页 有游标使用search_after 否则from、size
+        if(ObjectUtil.isNotNull(searchCursor)){
+            request.source().searchAfter(searchCursor.sortValues()).size(size);
+        }else {
+            request.source().from((page - 1) * size).size(size);
+        }
         // 3.发送请求
-        SearchResponse response = restHighLevelClient.search(request, RequestOptions.DEFAULT);
+        SearchResponse response = search(request);
         // 4.解析响应
-        return handleResponse(response, size);
+        HashMap<String, Object> hashMap = handleResponse(response, size);
+
+        // 5.当前页满了 生成下一页游标 否则已经是最后一页 关闭快照
+        SearchHit[] hits = response.getHits().getHits();
+        String nextPitId = StrUtil.isNotBlank(response.pointInTimeId()) ? response.pointInTimeId() : pitId;
+        if(hits.length == size){
+            if(StrUtil.isNotBlank(nextPitId) && !nextPitId.equals(pitId)){
+                pointInTimeService.update(searchArticleStr, nextPitId);
+            }
+            hashMap.put("nextCursor", new SearchCursor(nextPitId, hits[hits.length - 1].getSortValues(), searchArticleStr).encode());
+        }else if(StrUtil.isNotBlank(nextPitId)){
+            pointInTimeService.close(searchArticleStr, nextPitId);
+        }
+        return hashMap;
+    }
+
+    /**
+     * 异步发送es搜索请求 最多等待 es.searchTimeoutMillis 毫秒
+     * 分片查询超时设置得更短一些 超时的分片不影响其他分片返回部分结果
+     *
+     * @param request
+     * @return
+     * @throws IOException 超时或者请求失败
+     */
+    private SearchResponse search(SearchRequest request) throws IOException {
+        long budget = esProp.getSearchTimeoutMillis();
+        request.source().timeout(TimeValue.timeValueMillis(budget * 3 / 4));
+
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        Cancellable cancellable = restHighLevelClient.searchAsync(request, RequestOptions.DEFAULT, new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        try {
+            SearchResponse response = future.get(budget, TimeUnit.MILLISECONDS);
+            if(response.isTimedOut()){
+                log.warn("es搜索部分分片超时 返回部分结果");
+            }
+            return response;
+        } catch (TimeoutException e) {
+            cancellable.cancel();
+            throw new IOException("es搜索超过" + budget + "毫秒");
+        } catch (InterruptedException e) {
+            cancellable.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("es搜索被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof ElasticsearchException){
+                throw (ElasticsearchException) cause;
+            }
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * 文章热度值在redis当中的key
+     *
+     * @param author
+     * @param id
+     * @return
+     */
+    private String heatKey(String author, Long id) {
+        return "article" + author + id;
     }
 
     /**
@@ -330,7 +633,7 @@ public class ArticleServiceImpl implements ArticleService {
      */
     private HashMap<String, Object> handleResponse(SearchResponse response, Integer size) {
         HashMap<String, Object> hashMap = new HashMap<>();
-        ArrayList<Article> articles = new ArrayList<>();
+        ArrayList<ArticleSummary> articles = new ArrayList<>();
 
         // 4.解析响应
         SearchHits searchHits = response.getHits();
@@ -343,7 +646,7 @@ public class ArticleServiceImpl implements ArticleService {
             // 获取文档source
             String json = hit.getSourceAsString();
             // 反序列化
-            Article article = JSON.parseObject(json, Article.class);
+            ArticleSummary article = JSON.parseObject(json, ArticleSummary.class);
             articles.add(article);
         }
 
@@ -1,11 +1,14 @@
 package cc.langhai.service.impl;
 
+import cc.langhai.cache.PageCountCache;
 import cc.langhai.config.constant.ImageConstant;
 import cc.langhai.domain.Image;
 import cc.langhai.exception.BusinessException;
 import cc.langhai.mapper.ImageMapper;
 import cc.langhai.response.ImageReturnCode;
 import cc.langhai.service.ImageService;
+import cc.langhai.utils.CursorPage;
+import cc.langhai.utils.PageCursor;
 import cc.langhai.utils.UserContext;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.NumberUtil;
@@ -31,6 +34,9 @@ public class ImageServiceImpl implements ImageService {
     @Autowired
     private ImageMapper imageMapper;
 
+    @Autowired
+    private PageCountCache pageCountCache;
+
     @Override
     public void size() {
         Long userId = UserContext.getUserId();
@@ -53,12 +59,19 @@ public class ImageServiceImpl implements ImageService {
     @Override
     public void saveImage(Image image) {
         imageMapper.insertImage(image);
+        pageCountCache.remove("image:user:" + image.getUserId());
     }
 
     @Override
-    public List<Image> getAllImageByUser(Long userId) {
-        List<Image> imageList = imageMapper.getAllImageByUser(userId);
-        return imageList;
+    public CursorPage<Image> getAllImageByUser(Long userId, Integer page, Integer size, String cursor) {
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        int offset = pageCursor == null ? (page - 1) * size : 0;
+
+        // 多查询一条 用来判断是否还有下一页
+        List<Image> imageList = imageMapper.listImageByUser(userId, pageCursor, offset, size + 1);
+        long total = pageCountCache.get("image:user:" + userId, () -> imageMapper.countImageByUser(userId));
+
+        return CursorPage.of(imageList, size, page, pageCursor, total, Image::getAddTime, Image::getId);
     }
 
     @Override
@@ -99,8 +112,14 @@ public class ImageServiceImpl implements ImageService {
         return false;
     }
 
+    @Override
+    public Image getImage(String objectName) {
+        return imageMapper.getImageByMinioName(objectName);
+    }
+
     @Override
     public void delete(String objectName) {
         imageMapper.deleteImage(objectName);
+        pageCountCache.remove("image:user:" + UserContext.getUserId());
     }
 }
@@ -1,17 +1,21 @@
 package cc.langhai.service.impl;
 
+import cc.langhai.cache.ArticleNearCache;
+import cc.langhai.cache.PageCountCache;
+import cc.langhai.cache.SearchResultCache;
 import cc.langhai.config.constant.LabelConstant;
-import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
 import cc.langhai.domain.Label;
 import cc.langhai.exception.BusinessException;
 import cc.langhai.mapper.LabelMapper;
 import cc.langhai.response.LabelReturnCode;
 import cc.langhai.service.LabelService;
+import cc.langhai.suggest.SuggestIndex;
+import cc.langhai.utils.CursorPage;
+import cc.langhai.utils.PageCursor;
 import cc.langhai.utils.UserContext;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.ObjectUtil;
-import com.github.pagehelper.PageHelper;
-import com.github.pagehelper.PageInfo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -30,6 +34,18 @@ public class LabelServiceImpl implements LabelService {
     @Autowired
     private LabelMapper labelMapper;
 
+    @Autowired
+    private ArticleNearCache articleNearCache;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private SuggestIndex suggestIndex;
+
+    @Autowired
+    private PageCountCache pageCountCache;
+
     @Override
     public List<Label> getAllLabelByUser() {
         Long userId = UserContext.getUserId();
@@ -107,10 +123,14 @@ public class LabelServiceImpl implements LabelService {
         label.setContent(content);
         label.setUpdateTime(new Date());
         labelMapper.updateLabel(label);
+        // 文章缓存当中保存了标签内容 需要失效
+        articleNearCache.invalidateAll();
+        searchResultCache.bumpEpoch();
+        suggestIndex.publishLabel(id);
     }
 
     @Override
-    public PageInfo<Article> article(Integer page, Integer size, Long id) {
+    public CursorPage<ArticleSummary> article(Integer page, Integer size, String cursor, Long id) {
         Long userId = UserContext.getUserId();
 
         // 判断标签是否有权限操作
@@ -123,13 +143,14 @@ public class LabelServiceImpl implements LabelService {
             throw new BusinessException(LabelReturnCode.LABEL_ARTICLE_FAIL_00007);
         }
 
-        // 开启分页助手
-        PageHelper.startPage(page, size);
+        PageCursor pageCursor = PageCursor.decode(cursor);
+        int offset = pageCursor == null ? (page - 1) * size : 0;
 
-        List<Article> articleList = labelMapper.article(id);
-        PageInfo<Article> pageInfo = new PageInfo<>(articleList);
+        // 多查询一条 用来判断是否还有下一页
+        List<ArticleSummary> articleList = labelMapper.article(id, pageCursor, offset, size + 1);
+        long total = pageCountCache.get("article:label:" + id, () -> labelMapper.countArticle(id));
 
-        return pageInfo;
+        return CursorPage.of(articleList, size, page, pageCursor, total, ArticleSummary::getAddTime, ArticleSummary::getId);
     }
 
     @Override
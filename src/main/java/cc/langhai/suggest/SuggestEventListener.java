@@ -0,0 +1,41 @@
+package cc.langhai.suggest;
+
+import cn.hutool.core.util.NumberUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 监听搜索提示变化通知 更新本节点的搜索提示索引
+ *
+ * @author langhai
+ * @date 2023-01-17 11:05
+ */
+@Slf4j
+@Component
+public class SuggestEventListener implements MessageListener {
+
+    @Autowired
+    private SuggestIndex suggestIndex;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            if(body.startsWith(SuggestIndex.ARTICLE_PREFIX)){
+                suggestIndex.refreshArticles(SuggestIndex.parseIds(body.substring(SuggestIndex.ARTICLE_PREFIX.length())));
+            }else if(body.startsWith(SuggestIndex.LABEL_PREFIX)){
+                String id = body.substring(SuggestIndex.LABEL_PREFIX.length());
+                if(NumberUtil.isLong(id)){
+                    suggestIndex.refreshLabel(Long.valueOf(id));
+                }
+            }
+        } catch (Exception e) {
+            log.error("搜索提示索引更新失败 {}", body, e);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package cc.langhai.suggest;
+
+import cc.langhai.domain.Article;
+import cc.langhai.domain.Label;
+import cc.langhai.mapper.ArticleMapper;
+import cc.langhai.mapper.LabelMapper;
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.extra.pinyin.PinyinUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.fst.WFSTCompletionLookup;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 搜索提示索引
+ * 内存中保存公开文章的标题和标签 按照 原文、拼音全拼、拼音首字母 建立前缀索引（lucene WFST）
+ * 文章和标签变化时通过redis通知所有节点更新 索引在后台合并重建 查询不访问es和数据库
+ *
+ * @author langhai
+ * @date 2023-01-17 10:20
+ */
+@Slf4j
+@Component
+public class SuggestIndex {
+
+    /**
+     * 搜索提示变化通知的频道
+     *
+     */
+    public static final String SUGGEST_CHANNEL = "blogs:suggest";
+
+    /**
+     * 通知内容前缀 文章id列表 / 标签id
+     *
+     */
+    public static final String ARTICLE_PREFIX = "article:";
+
+    public static final String LABEL_PREFIX = "label:";
+
+    /**
+     * 索引key和数据id之间的分隔符
+     *
+     */
+    private static final char SEPARATOR = '\u001F';
+
+    /**
+     * 启动时每批读取的文章数量
+     *
+     */
+    private static final int LOAD_BATCH_SIZE = 500;
+
+    /**
+     * 公开文章 id -> 文章标题、标签
+     *
+     */
+    private final Map<Long, Entry> articles = new ConcurrentHashMap<>();
+
+    private volatile Snapshot snapshot = new Snapshot();
+
+    /**
+     * 启动加载完成之前收到的变化 加载读取的可能是变化之前的数据 加载完成后再处理
+     *
+     */
+    private final Set<Long> pendingArticles = new LinkedHashSet<>();
+
+    private final Set<Long> pendingLabels = new LinkedHashSet<>();
+
+    private boolean loaded = false;
+
+    private volatile boolean dirty = false;
+
+    @Autowired
+    private ArticleMapper articleMapper;
+
+    @Autowired
+    private LabelMapper labelMapper;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::load, "suggest-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 按照前缀查询文章标题
+     *
+     * @param prefix
+     * @param size
+     * @return id -> 标题
+     */
+    public Map<Long, String> suggestTitle(String prefix, int size) {
+        Snapshot current = snapshot;
+        return lookup(current.titleLookup, current.titles, prefix, size);
+    }
+
+    /**
+     * 按照前缀查询标签 公开文章越多越靠前
+     *
+     * @param prefix
+     * @param size
+     * @return id -> 标签内容
+     */
+    public Map<Long, String> suggestLabel(String prefix, int size) {
+        Snapshot current = snapshot;
+        return lookup(current.labelLookup, current.labels, prefix, size);
+    }
+
+    /**
+     * 通知所有节点文章发生变化
+     *
+     * @param ids
+     */
+    public void publishArticles(Set<Long> ids) {
+        if(CollectionUtil.isEmpty(ids)){
+            return;
+        }
+        publish(ARTICLE_PREFIX + CollectionUtil.join(ids, ","));
+    }
+
+    /**
+     * 事务提交之后 通知所有节点标签内容发生变化
+     *
+     * @param id
+     */
+    public void publishLabel(Long id) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(LABEL_PREFIX + id);
+                }
+            });
+        }else {
+            publish(LABEL_PREFIX + id);
+        }
+    }
+
+    /**
+     * 重新读取文章 公开的加入索引 其余的移除
+     *
+     * @param ids
+     */
+    public void refreshArticles(List<Long> ids) {
+        synchronized (pendingArticles) {
+            if(!loaded){
+                pendingArticles.addAll(ids);
+                return;
+            }
+        }
+
+        Map<Long, Article> found = new HashMap<>();
+        for (Article article : articleMapper.listByIds(ids)) {
+            found.put(article.getId(), article);
+        }
+
+        for (Long id : ids) {
+            Article article = found.get(id);
+            if(ObjectUtil.isNotNull(article) && Integer.valueOf(1).equals(article.getPublicShow())){
+                articles.put(id, new Entry(article));
+            }else {
+                articles.remove(id);
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * 标签内容变化 更新使用该标签的文章
+     *
+     * @param id
+     */
+    public void refreshLabel(Long id) {
+        synchronized (pendingArticles) {
+            if(!loaded){
+                pendingLabels.add(id);
+                return;
+            }
+        }
+
+        Label label = labelMapper.getLabelById(id);
+        if(ObjectUtil.isNull(label)){
+            return;
+        }
+
+        for (Entry entry : articles.values()) {
+            if(id.equals(entry.labelId)){
+                entry.labelContent = label.getContent();
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * 合并一段时间内的变化 重建前缀索引
+     *
+     */
+    @Scheduled(fixedDelay = 1000L)
+    public void rebuildIfDirty() {
+        if(!dirty){
+            return;
+        }
+        dirty = false;
+        rebuild();
+    }
+
+    /**
+     * 启动后从数据库读取所有公开文章
+     *
+     */
+    private void load() {
+        long lastId = 0L;
+        try {
+            while (true) {
+                List<Article> articleList = articleMapper.listIndexArticle(lastId, LOAD_BATCH_SIZE);
+                if(CollectionUtil.isEmpty(articleList)){
+                    break;
+                }
+                for (Article article : articleList) {
+                    articles.put(article.getId(), new Entry(article));
+                    lastId = article.getId();
+                }
+            }
+            rebuild();
+            log.info("搜索提示索引加载完成 共{}篇文章", articles.size());
+        } catch (Exception e) {
+            log.error("搜索提示索引加载失败", e);
+        } finally {
+            refreshPending();
+        }
+    }
+
+    /**
+     * 加载完成 重新读取加载期间变化的文章和标签 之后的变化直接处理
+     *
+     */
+    private void refreshPending() {
+        List<Long> articleIds;
+        List<Long> labelIds;
+        synchronized (pendingArticles) {
+            loaded = true;
+            articleIds = new ArrayList<>(pendingArticles);
+            labelIds = new ArrayList<>(pendingLabels);
+            pendingArticles.clear();
+            pendingLabels.clear();
+        }
+
+        try {
+            for (List<Long> batch : CollectionUtil.split(articleIds, LOAD_BATCH_SIZE)) {
+                refreshArticles(batch);
+            }
+            for (Long labelId : labelIds) {
+                refreshLabel(labelId);
+            }
+        } catch (Exception e) {
+            log.error("搜索提示索引处理加载期间的变化失败", e);
+        }
+    }
+
+    private synchronized void rebuild() {
+        Map<Long, String> titles = new HashMap<>();
+        List<Input> titleInputs = new ArrayList<>();
+        Map<Long, String> labels = new HashMap<>();
+        Map<Long, Long> labelCounts = new HashMap<>();
+
+        for (Map.Entry<Long, Entry> item : articles.entrySet()) {
+            Entry entry = item.getValue();
+            titles.put(item.getKey(), entry.title);
+            addInputs(titleInputs, entry.title, item.getKey(), entry.weight);
+            if(ObjectUtil.isNotNull(entry.labelId) && StrUtil.isNotBlank(entry.labelContent)){
+                labels.put(entry.labelId, entry.labelContent);
+                labelCounts.merge(entry.labelId, 1L, Long::sum);
+            }
+        }
+
+        List<Input> labelInputs = new ArrayList<>();
+        for (Map.Entry<Long, String> label : labels.entrySet()) {
+            addInputs(labelInputs, label.getValue(), label.getKey(), labelCounts.get(label.getKey()));
+        }
+
+        try {
+            snapshot = new Snapshot(build(titleInputs), titles, build(labelInputs), labels);
+        } catch (IOException e) {
+            log.error("搜索提示索引重建失败", e);
+        }
+    }
+
+    private Map<Long, String> lookup(WFSTCompletionLookup lookup, Map<Long, String> texts, String prefix, int size) {
+        String key = normalize(prefix);
+        if(ObjectUtil.isNull(lookup) || StrUtil.isEmpty(key)){
+            return Collections.emptyMap();
+        }
+
+        // 同一条数据有多个key 多查一些之后去重
+        List<Lookup.LookupResult> results = lookup.lookup(key, null, false, size * 3);
+        Map<Long, String> suggestions = new LinkedHashMap<>();
+        for (Lookup.LookupResult result : results) {
+            String resultKey = result.key.toString();
+            Long id = Long.valueOf(resultKey.substring(resultKey.lastIndexOf(SEPARATOR) + 1));
+            String text = texts.get(id);
+            if(text != null){
+                suggestions.put(id, text);
+            }
+            if(suggestions.size() >= size){
+                break;
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * 原文、拼音全拼、拼音首字母 各建立一个key
+     *
+     */
+    private void addInputs(List<Input> inputs, String text, Long id, long weight) {
+        if(StrUtil.isBlank(text)){
+            return;
+        }
+
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(normalize(text));
+        keys.add(normalize(PinyinUtil.getPinyin(text, "")));
+        keys.add(normalize(PinyinUtil.getFirstLetter(text, "")));
+        for (String key : keys) {
+            if(StrUtil.isNotEmpty(key)){
+                inputs.add(new Input(key + SEPARATOR + id, weight));
+            }
+        }
+    }
+
+    private WFSTCompletionLookup build(List<Input> inputs) throws IOException {
+        WFSTCompletionLookup lookup = new WFSTCompletionLookup(new ByteBuffersDirectory(), "suggest", false);
+        lookup.build(new InputListIterator(inputs));
+        return lookup;
+    }
+
+    private String normalize(String text) {
+        return StrUtil.trimToEmpty(text).replaceAll("\\s+", " ").replace(String.valueOf(SEPARATOR), "").toLowerCase();
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(SUGGEST_CHANNEL, message);
+        } catch (Exception e) {
+            log.error("搜索提示变化通知发送失败 {}", message, e);
+        }
+    }
+
+    /**
+     * 解析通知内容 文章id列表
+     *
+     * @param body
+     * @return
+     */
+    public static List<Long> parseIds(String body) {
+        return StrUtil.split(body, ',').stream().filter(StrUtil::isNotBlank).map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    private static class Entry {
+
+        private final String title;
+
+        private final Long labelId;
+
+        private volatile String labelContent;
+
+        /**
+         * 文章按照发布时间排序 使用发布时间的分钟数作为权重
+         *
+         */
+        private final long weight;
+
+        private Entry(Article article) {
+            this.title = article.getTitle();
+            this.labelId = article.getLabelId();
+            this.labelContent = article.getLabelContent();
+            this.weight = ObjectUtil.isNull(article.getAddTime()) ? 0L : article.getAddTime().getTime() / 60000L;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final WFSTCompletionLookup titleLookup;
+
+        private final Map<Long, String> titles;
+
+        private final WFSTCompletionLookup labelLookup;
+
+        private final Map<Long, String> labels;
+
+        private Snapshot() {
+            this(null, Collections.emptyMap(), null, Collections.emptyMap());
+        }
+
+        private Snapshot(WFSTCompletionLookup titleLookup, Map<Long, String> titles,
+                         WFSTCompletionLookup labelLookup, Map<Long, String> labels) {
+            this.titleLookup = titleLookup;
+            this.titles = titles;
+            this.labelLookup = labelLookup;
+            this.labels = labels;
+        }
+    }
+
+    private static class Input {
+
+        private final BytesRef key;
+
+        private final long weight;
+
+        private Input(String key, long weight) {
+            this.key = new BytesRef(key);
+            this.weight = weight;
+        }
+    }
+
+    private static class InputListIterator implements InputIterator {
+
+        private final Iterator<Input> iterator;
+
+        private Input current;
+
+        private InputListIterator(List<Input> inputs) {
+            this.iterator = inputs.iterator();
+        }
+
+        @Override
+        public BytesRef next() {
+            if(!iterator.hasNext()){
+                return null;
+            }
+            current = iterator.next();
+            return current.key;
+        }
+
+        @Override
+        public long weight() {
+            return current.weight;
+        }
+
+        @Override
+        public BytesRef payload() {
+            return null;
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return false;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+}
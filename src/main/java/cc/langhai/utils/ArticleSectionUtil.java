@@ -0,0 +1,122 @@
+package cc.langhai.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 文章分段工具类
+ * 长文章按照顶层html元素的边界切分为多段 每段不少于指定的字符数
+ * 只在顶层元素结束的位置切分 不会把表格、列表等元素切断
+ *
+ * @author langhai
+ * @date 2023-01-18 15:20
+ */
+public class ArticleSectionUtil {
+
+    /**
+     * 没有结束标签的元素
+     *
+     */
+    private static final Set<String> VOID_TAGS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "source", "track", "wbr"));
+
+    /**
+     * 内容不是html的元素 跳过内容直到结束标签
+     *
+     */
+    private static final Set<String> RAW_TEXT_TAGS = new HashSet<>(Arrays.asList("script", "style", "textarea"));
+
+    /**
+     * 切分文章html
+     *
+     * @param html 文章html
+     * @param sectionChars 每段最少的字符数 小于等于0时不切分
+     * @return 文章分段 html为空时返回空集合
+     */
+    public static List<String> split(String html, int sectionChars) {
+        List<String> sections = new ArrayList<>();
+        if(StrUtil.isEmpty(html)){
+            return sections;
+        }
+        if(sectionChars <= 0 || html.length() <= sectionChars){
+            sections.add(html);
+            return sections;
+        }
+
+        int start = 0;
+        int depth = 0;
+        int i = 0;
+        while (i < html.length()) {
+            if(html.charAt(i) != '<'){
+                i++;
+                continue;
+            }
+
+            if(html.startsWith("<!--", i)){
+                int end = html.indexOf("-->", i + 4);
+                i = end < 0 ? html.length() : end + 3;
+                continue;
+            }
+
+            int end = html.indexOf('>', i + 1);
+            if(end < 0){
+                break;
+            }
+            boolean closing = html.charAt(i + 1) == '/';
+            String name = tagName(html, closing ? i + 2 : i + 1);
+            if(name.isEmpty()){
+                // 不是标签 例如文本当中的 < 符号
+                i++;
+                continue;
+            }
+
+            i = end + 1;
+            if(closing){
+                depth = Math.max(depth - 1, 0);
+            }else if(RAW_TEXT_TAGS.contains(name)){
+                int close = StrUtil.indexOfIgnoreCase(html, "</" + name, i);
+                if(close >= 0){
+                    int closeEnd = html.indexOf('>', close);
+                    i = closeEnd < 0 ? html.length() : closeEnd + 1;
+                }else {
+                    i = html.length();
+                }
+            }else if(!VOID_TAGS.contains(name) && html.charAt(end - 1) != '/'){
+                depth++;
+            }
+
+            if(depth == 0 && i - start >= sectionChars && i < html.length()){
+                sections.add(html.substring(start, i));
+                start = i;
+            }
+        }
+
+        if(start < html.length()){
+            sections.add(html.substring(start));
+        }
+        return sections;
+    }
+
+    /**
+     * 读取标签名 转换为小写
+     *
+     * @param html
+     * @param from 标签名开始的位置
+     * @return 不是合法标签名时返回空字符串
+     */
+    private static String tagName(String html, int from) {
+        int i = from;
+        while (i < html.length() && (Character.isLetterOrDigit(html.charAt(i)) || html.charAt(i) == '-')) {
+            i++;
+        }
+        if(i == from || !Character.isLetter(html.charAt(from))){
+            return "";
+        }
+        return html.substring(from, i).toLowerCase();
+    }
+}
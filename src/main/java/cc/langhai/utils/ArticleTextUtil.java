@@ -0,0 +1,110 @@
+package cc.langhai.utils;
+
+import cc.langhai.domain.Article;
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HtmlUtil;
+
+import java.util.regex.Pattern;
+
+/**
+ * 文章内容处理工具类
+ * 文章保存时从html当中提取纯文本、摘要、字数、阅读时长以及第一张图片
+ *
+ * @author langhai
+ * @date 2023-01-14 10:15
+ */
+public class ArticleTextUtil {
+
+    /**
+     * 摘要长度 字符数
+     *
+     */
+    public static final int EXCERPT_LENGTH = 120;
+
+    /**
+     * 每分钟阅读的中文字数
+     *
+     */
+    private static final int CJK_PER_MINUTE = 400;
+
+    /**
+     * 每分钟阅读的英文单词数
+     *
+     */
+    private static final int WORD_PER_MINUTE = 200;
+
+    private static final Pattern IMG_SRC = Pattern.compile("<img[^>]+?src\\s*=\\s*[\"']([^\"']+)[\"']", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern CJK = Pattern.compile("[\\u3400-\\u9fff\\uf900-\\ufaff]");
+
+    private static final Pattern WORD = Pattern.compile("[A-Za-z0-9]+");
+
+    /**
+     * 根据文章html填充纯文本、摘要、字数、阅读时长以及第一张图片
+     *
+     * @param article
+     */
+    public static void enrich(Article article) {
+        String html = article.getHtml();
+        String plainText = plainText(html);
+        article.setPlainText(plainText);
+        article.setExcerpt(excerpt(plainText));
+
+        int cjkCount = ReUtil.count(CJK, plainText);
+        int wordCount = ReUtil.count(WORD, plainText);
+        article.setWordCount(cjkCount + wordCount);
+        // 阅读时长 最少1分钟
+        int readingTime = (int) Math.ceil((double) cjkCount / CJK_PER_MINUTE + (double) wordCount / WORD_PER_MINUTE);
+        article.setReadingTime(Math.max(readingTime, 1));
+        article.setFirstImage(firstImage(html));
+    }
+
+    /**
+     * 提取html当中的纯文本 连续空白合并为一个空格
+     *
+     * @param html
+     * @return
+     */
+    public static String plainText(String html) {
+        if(StrUtil.isBlank(html)){
+            return "";
+        }
+
+        String text = HtmlUtil.removeHtmlTag(html, "script", "style");
+        text = HtmlUtil.cleanHtmlTag(text);
+        text = HtmlUtil.unescape(text);
+        return StrUtil.trim(text.replaceAll("[\\s\\u00a0]+", " "));
+    }
+
+    /**
+     * 截取摘要
+     *
+     * @param plainText
+     * @return
+     */
+    public static String excerpt(String plainText) {
+        if(StrUtil.isBlank(plainText)){
+            return "";
+        }
+
+        if(plainText.codePointCount(0, plainText.length()) <= EXCERPT_LENGTH){
+            return plainText;
+        }
+        int end = plainText.offsetByCodePoints(0, EXCERPT_LENGTH);
+        return plainText.substring(0, end) + "…";
+    }
+
+    /**
+     * 第一张图片地址
+     *
+     * @param html
+     * @return 没有图片返回null
+     */
+    public static String firstImage(String html) {
+        if(StrUtil.isBlank(html)){
+            return null;
+        }
+        return ReUtil.get(IMG_SRC, html, 1);
+    }
+}
@@ -0,0 +1,122 @@
+package cc.langhai.utils;
+
+import cn.hutool.core.collection.CollectionUtil;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * 游标分页结果
+ * 查询时多查一条数据 用来判断是否还有下一页
+ *
+ * @author langhai
+ * @date 2023-01-13 10:12
+ */
+@Data
+public class CursorPage<T> {
+
+    /**
+     * 当前页数据
+     *
+     */
+    private List<T> list;
+
+    /**
+     * 数据总数 近似值
+     *
+     */
+    private long total;
+
+    /**
+     * 总页数 近似值
+     *
+     */
+    private long pages;
+
+    /**
+     * 下一页游标 没有下一页为null
+     *
+     */
+    private String nextCursor;
+
+    /**
+     * 上一页游标 没有上一页为null
+     *
+     */
+    private String prevCursor;
+
+    /**
+     * 组装分页结果
+     *
+     * @param rows     查询结果 最多 size + 1 条
+     * @param size     每页数量
+     * @param page     当前页数 页数方式查询时使用
+     * @param cursor   当前游标 页数方式查询时为null
+     * @param total    数据总数 近似值
+     * @param addTime  获取数据添加时间
+     * @param id       获取数据id
+     * @return
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, int page, PageCursor cursor, long total,
+                                       Function<T, Date> addTime, Function<T, Long> id) {
+        List<T> list = rows == null ? new ArrayList<>() : new ArrayList<>(rows);
+        boolean more = list.size() > size;
+        if(more){
+            list = new ArrayList<>(list.subList(0, size));
+        }
+
+        boolean hasNext;
+        boolean hasPrev;
+        if(cursor == null){
+            hasNext = more;
+            hasPrev = page > 1;
+        }else if(cursor.isPrevious()){
+            // 向前翻页按照升序查询 需要反转
+            Collections.reverse(list);
+            hasNext = true;
+            hasPrev = more;
+        }else {
+            hasNext = more;
+            hasPrev = true;
+        }
+
+        CursorPage<T> cursorPage = new CursorPage<>();
+        cursorPage.setList(list);
+        cursorPage.setTotal(total);
+        cursorPage.setPages((total + size - 1) / size);
+        if(CollectionUtil.isNotEmpty(list)){
+            T first = list.get(0);
+            T last = list.get(list.size() - 1);
+            if(hasNext){
+                cursorPage.setNextCursor(new PageCursor(addTime.apply(last), id.apply(last), false).encode());
+            }
+            if(hasPrev){
+                cursorPage.setPrevCursor(new PageCursor(addTime.apply(first), id.apply(first), true).encode());
+            }
+        }
+        return cursorPage;
+    }
+
+    /**
+     * 复制分页结果 列表中的每条数据也复制一份
+     *
+     * @param page 原分页结果
+     * @param copier 复制一条数据
+     * @return
+     */
+    public static <T> CursorPage<T> copyOf(CursorPage<T> page, UnaryOperator<T> copier) {
+        CursorPage<T> copy = new CursorPage<>();
+        copy.setList(page.getList() == null ? new ArrayList<>() : page.getList().stream().map(copier).collect(Collectors.toList()));
+        copy.setTotal(page.getTotal());
+        copy.setPages(page.getPages());
+        copy.setNextCursor(page.getNextCursor());
+        copy.setPrevCursor(page.getPrevCursor());
+        return copy;
+    }
+}
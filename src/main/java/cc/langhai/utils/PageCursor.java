@@ -0,0 +1,73 @@
+package cc.langhai.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 游标分页的位置 按照 (add_time, id) 定位
+ * 页面上只传递编码之后的字符串
+ *
+ * @author langhai
+ * @date 2023-01-13 10:05
+ */
+@Data
+public class PageCursor {
+
+    /**
+     * 定位数据的添加时间
+     *
+     */
+    private Date addTime;
+
+    /**
+     * 定位数据的id
+     *
+     */
+    private Long id;
+
+    /**
+     * true 查询定位数据之前（更新）的一页  false 查询定位数据之后（更旧）的一页
+     *
+     */
+    private boolean previous;
+
+    public PageCursor(Date addTime, Long id, boolean previous) {
+        this.addTime = addTime;
+        this.id = id;
+        this.previous = previous;
+    }
+
+    /**
+     * 编码为页面传递的字符串
+     *
+     * @return
+     */
+    public String encode() {
+        return Base64.encodeUrlSafe((previous ? "p" : "n") + ":" + addTime.getTime() + ":" + id);
+    }
+
+    /**
+     * 解析页面传递的字符串
+     *
+     * @param token
+     * @return 为空或者格式错误返回null
+     */
+    public static PageCursor decode(String token) {
+        if(StrUtil.isBlank(token)){
+            return null;
+        }
+
+        try {
+            String[] split = Base64.decodeStr(token).split(":");
+            if(split.length != 3 || !("p".equals(split[0]) || "n".equals(split[0]))){
+                return null;
+            }
+            return new PageCursor(new Date(Long.parseLong(split[1])), Long.valueOf(split[2]), "p".equals(split[0]));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package cc.langhai.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * es搜索 search_after 分页的位置 按照 (_score, addTime, id) 定位
+ * 页面上只传递编码之后的字符串
+ *
+ * @author langhai
+ * @date 2023-01-16 09:40
+ */
+@Data
+@NoArgsConstructor
+public class SearchCursor {
+
+    /**
+     * es point in time 快照id 为空时直接查询索引
+     *
+     */
+    private String pitId;
+
+    /**
+     * 上一页最后一条数据的得分
+     *
+     */
+    private Float score;
+
+    /**
+     * 上一页最后一条数据的添加时间
+     *
+     */
+    private Long addTime;
+
+    /**
+     * 上一页最后一条数据的id
+     *
+     */
+    private String id;
+
+    /**
+     * 搜索条件的hash 搜索条件变化之后游标失效
+     *
+     */
+    private Integer query;
+
+    public SearchCursor(String pitId, Object[] sortValues, String searchArticleStr) {
+        this.pitId = pitId;
+        this.score = ((Number) sortValues[0]).floatValue();
+        this.addTime = ((Number) sortValues[1]).longValue();
+        this.id = String.valueOf(sortValues[2]);
+        this.query = StrUtil.nullToEmpty(searchArticleStr).hashCode();
+    }
+
+    /**
+     * search_after 参数
+     *
+     * @return
+     */
+    public Object[] sortValues() {
+        return new Object[]{score, addTime, id};
+    }
+
+    /**
+     * 编码为页面传递的字符串
+     *
+     * @return
+     */
+    public String encode() {
+        return Base64.encodeUrlSafe(JSON.toJSONString(this));
+    }
+
+    /**
+     * 解析页面传递的字符串
+     *
+     * @param token
+     * @param searchArticleStr 当前的搜索条件
+     * @return 为空、格式错误或者搜索条件不一致返回null
+     */
+    public static SearchCursor decode(String token, String searchArticleStr) {
+        if(StrUtil.isBlank(token)){
+            return null;
+        }
+
+        try {
+            SearchCursor cursor = JSON.parseObject(Base64.decodeStr(token), SearchCursor.class);
+            if(cursor.getScore() == null || cursor.getAddTime() == null || cursor.getId() == null
+                    || !Integer.valueOf(StrUtil.nullToEmpty(searchArticleStr).hashCode()).equals(cursor.getQuery())){
+                return null;
+            }
+            return cursor;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package cc.langhai.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 堆外字节存储 测试用例
+ * 块分配、跨块读取、固定期间的淘汰以及容量、数量、存活时间限制
+ *
+ * @author langhai
+ * @date 2023-01-18 11:05
+ */
+public class OffHeapStoreTest {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private static final long TTL = 60 * 1000L;
+
+    /**
+     * 跨多个块的数据 最后一块不满 按块写出和按流读取都与原数据一致
+     *
+     */
+    @Test
+    void roundTripMultiBlock() throws IOException {
+        OffHeapStore<String> store = new OffHeapStore<>(BLOCK_SIZE * 8, BLOCK_SIZE, 10, TTL);
+        byte[] data = bytes(BLOCK_SIZE * 3 + 5, 1);
+        assertTrue(store.put("a", "v1", data));
+        assertEquals(BLOCK_SIZE * 4, store.getUsedBytes());
+
+        try (OffHeapStore<String>.Entry entry = store.acquire("a", "v1")) {
+            assertNotNull(entry);
+            assertEquals(data.length, entry.length());
+            assertArrayEquals(data, writeTo(entry));
+            assertArrayEquals(data, readAll(entry.openStream()));
+            assertArrayEquals(data, readByByte(entry.openStream()));
+        }
+    }
+
+    /**
+     * 正好占满整块以及空数据
+     *
+     */
+    @Test
+    void roundTripBlockBoundary() throws IOException {
+        OffHeapStore<String> store = new OffHeapStore<>(BLOCK_SIZE * 4, BLOCK_SIZE, 10, TTL);
+        byte[] full = bytes(BLOCK_SIZE * 2, 7);
+        assertTrue(store.put("full", "v1", full));
+        assertTrue(store.put("empty", "v1", new byte[0]));
+
+        try (OffHeapStore<String>.Entry entry = store.acquire("full", "v1")) {
+            assertArrayEquals(full, writeTo(entry));
+            assertArrayEquals(full, readAll(entry.openStream()));
+        }
+        try (OffHeapStore<String>.Entry entry = store.acquire("empty", "v1")) {
+            assertEquals(0, entry.length());
+            assertEquals(-1, entry.openStream().read());
+            assertArrayEquals(new byte[0], writeTo(entry));
+        }
+    }
+
+    /**
+     * 读取中的数据被淘汰 块在关闭之前不会分配给新数据
+     *
+     */
+    @Test
+    void evictWhilePinned() throws IOException {
+        OffHeapStore<String> store = new OffHeapStore<>(BLOCK_SIZE * 4, BLOCK_SIZE, 10, TTL);
+        byte[] pinnedData = bytes(BLOCK_SIZE * 3, 3);
+        assertTrue(store.put("pinned", "v1", pinnedData));
+
+        OffHeapStore<String>.Entry pinned = store.acquire("pinned", "v1");
+        assertNotNull(pinned);
+
+        // 需要两块 只有一块空闲 淘汰固定中的数据也释放不出空间
+        assertFalse(store.put("large", "v1", bytes(BLOCK_SIZE * 2, 5)));
+        assertNull(store.acquire("pinned", "v1"));
+        assertEquals(BLOCK_SIZE * 3, store.getUsedBytes());
+
+        // 剩余的一块可以使用 不能覆盖固定中的数据
+        byte[] small = bytes(BLOCK_SIZE, 9);
+        assertTrue(store.put("small", "v1", small));
+        assertArrayEquals(pinnedData, readAll(pinned.openStream()));
+
+        pinned.close();
+        assertEquals(BLOCK_SIZE, store.getUsedBytes());
+        assertTrue(store.put("large", "v1", bytes(BLOCK_SIZE * 2, 5)));
+        try (OffHeapStore<String>.Entry entry = store.acquire("small", "v1")) {
+            assertArrayEquals(small, writeTo(entry));
+        }
+    }
+
+    /**
+     * 空间不足时淘汰最久没有使用的数据 超过总容量的数据不保存
+     *
+     */
+    @Test
+    void putLargerThanFreeSpace() throws IOException {
+        OffHeapStore<String> store = new OffHeapStore<>(BLOCK_SIZE * 4, BLOCK_SIZE, 10, TTL);
+        assertTrue(store.put("a", "v1", bytes(BLOCK_SIZE, 1)));
+        assertTrue(store.put("b", "v1", bytes(BLOCK_SIZE, 2)));
+        assertTrue(store.put("c", "v1", bytes(BLOCK_SIZE, 3)));
+        // 访问a之后 b是最久没有使用的
+        store.acquire("a", "v1").close();
+
+        byte[] d = bytes(BLOCK_SIZE * 2, 4);
+        assertTrue(store.put("d", "v1", d));
+        assertEquals(1, store.getEvictions());
+        assertNull(store.acquire("b", "v1"));
+        store.acquire("a", "v1").close();
+        store.acquire("c", "v1").close();
+        try (OffHeapStore<String>.Entry entry = store.acquire("d", "v1")) {
+            assertArrayEquals(d, writeTo(entry));
+        }
+
+        assertFalse(store.put("huge", "v1", bytes(BLOCK_SIZE * 4 + 1, 6)));
+        assertEquals(3, store.getSize());
+        assertEquals(BLOCK_SIZE * 4, store.getUsedBytes());
+    }
+
+    /**
+     * 覆盖保存同一个key 先回收旧数据的块
+     *
+     */
+    @Test
+    void replaceSameKey() throws IOException {
+        OffHeapStore<String> store = new OffHeapStore<>(BLOCK_SIZE * 3, BLOCK_SIZE, 10, TTL);
+        assertTrue(store.put("a", "v1", bytes(BLOCK_SIZE * 3, 1)));
+        byte[] replaced = bytes(BLOCK_SIZE * 3, 2);
+        assertTrue(store.put("a", "v2", replaced));
+        assertEquals(0, store.getEvictions());
+
+        assertNull(store.acquire("a", "v1"));
+        try (OffHeapStore<String>.Entry entry = store.acquire("a", "v2")) {
+            assertArrayEquals(replaced, writeTo(entry));
+        }
+    }
+
+    /**
+     * 数量上限、存活时间以及删除
+     *
+     */
+    @Test
+    void countTtlAndRemove() {
+        OffHeapStore<String> store = new OffHeapStore<>(BLOCK_SIZE * 8, BLOCK_SIZE, 2, TTL);
+        assertTrue(store.put("a", "v1", bytes(1, 1)));
+        assertTrue(store.put("b", "v1", bytes(1, 2)));
+        assertTrue(store.put("c", "v1", bytes(1, 3)));
+        assertEquals(2, store.getSize());
+        assertNull(store.acquire("a", "v1"));
+
+        store.remove("b");
+        assertNull(store.acquire("b", "v1"));
+        assertEquals(BLOCK_SIZE, store.getUsedBytes());
+
+        OffHeapStore<String> expired = new OffHeapStore<>(BLOCK_SIZE * 2, BLOCK_SIZE, 2, -1L);
+        assertTrue(expired.put("a", "v1", bytes(BLOCK_SIZE, 1)));
+        assertNull(expired.acquire("a", "v1"));
+        assertEquals(0, expired.getSize());
+        assertEquals(0, expired.getUsedBytes());
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    private static byte[] writeTo(OffHeapStore<String>.Entry entry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entry.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // 缓冲区小于块大小 读取会停在块中间
+        byte[] buf = new byte[BLOCK_SIZE / 2 + 3];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readByByte(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            out.write(b);
+        }
+        return out.toByteArray();
+    }
+}
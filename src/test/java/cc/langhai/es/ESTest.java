@@ -1,6 +1,7 @@
 package cc.langhai.es;
 
 import cc.langhai.domain.Article;
+import cc.langhai.domain.ArticleSummary;
 import cc.langhai.es.config.ESConstants;
 import cc.langhai.es.config.ESProp;
 import cc.langhai.mapper.ArticleMapper;
@@ -125,12 +126,12 @@ public class ESTest {
     @Test
     void testBulkRequest() throws IOException {
         // 批量查询酒店数据
-        List<Article> allArticlePublicShow = articleMapper.getAllArticlePublicShow("");
+        List<ArticleSummary> allArticlePublicShow = articleMapper.getAllArticlePublicShow("", null, null, null);
 
         // 1.创建Request
         BulkRequest request = new BulkRequest();
         // 2.准备参数，添加多个新增的Request
-        for (Article article : allArticlePublicShow) {
+        for (ArticleSummary article : allArticlePublicShow) {
             // 2.1.创建新增文档的Request对象
             request.add(new IndexRequest("langhaiblogs")
                     .id(article.getId().toString())
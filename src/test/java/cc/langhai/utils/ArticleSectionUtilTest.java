@@ -0,0 +1,94 @@
+package cc.langhai.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 文章分段工具类 测试用例
+ * 只在顶层元素结束的位置切分 所有分段拼接后与原文一致
+ *
+ * @author langhai
+ * @date 2023-01-18 16:10
+ */
+public class ArticleSectionUtilTest {
+
+    @Test
+    void emptyAndShort() {
+        assertEquals(Collections.emptyList(), ArticleSectionUtil.split(null, 10));
+        assertEquals(Collections.emptyList(), ArticleSectionUtil.split("", 10));
+        assertEquals(Collections.singletonList("<p>a</p><p>b</p>"), ArticleSectionUtil.split("<p>a</p><p>b</p>", 100));
+        assertEquals(Collections.singletonList("<p>a</p><p>b</p>"), ArticleSectionUtil.split("<p>a</p><p>b</p>", 0));
+    }
+
+    /**
+     * 每段不少于指定字符数 在达到字符数之后的第一个顶层元素结束位置切分
+     *
+     */
+    @Test
+    void splitAtTopLevelBoundary() {
+        assertSplit(10, "<p>ab</p><p>c</p>", "<p>second</p>", "<p>third</p>");
+    }
+
+    /**
+     * 嵌套表格只在最外层表格结束时切分
+     *
+     */
+    @Test
+    void nestedTables() {
+        String table = "<table><tr><td><table><tr><td>inner</td></tr></table></td><td>cell</td></tr></table>";
+        assertSplit(1, table, "<p>between</p>", table);
+    }
+
+    /**
+     * script、style 当中的标签文本不影响层级
+     *
+     */
+    @Test
+    void rawTextElements() {
+        assertSplit(1, "<p>a</p>", "<script>var s = \"<div><table>\"; if (a < b) {}</script>",
+                "<STYLE>p > span { color: red }</STYLE>", "<p>b</p>");
+    }
+
+    /**
+     * 注释当中的标签不影响层级 顶层注释不是切分位置 跟随后面的元素
+     *
+     */
+    @Test
+    void comments() {
+        assertSplit(1, "<div><!-- </div><div> --><p>x</p></div>", "<!-- top --><p>y</p>");
+        assertSplit(1, "<p>a</p>", "<!-- unterminated </p>");
+    }
+
+    /**
+     * 文本当中的 < 和 > 不是标签
+     *
+     */
+    @Test
+    void strayAngleBrackets() {
+        assertSplit(1, "<p>1 < 2</p>", "<p>3 > 2 and a <= b</p>", "<p>x <- y</p>");
+        assertSplit(1, "<p>a</p>", "<");
+    }
+
+    /**
+     * 没有结束标签和自闭合的元素不增加层级
+     *
+     */
+    @Test
+    void voidAndSelfClosingTags() {
+        assertSplit(1, "<p>a<br>b<img src=\"x.png\"/><svg><path d=\"M0\"/></svg></p>", "<hr>", "<BR/>", "<p>c</p>");
+    }
+
+    /**
+     * 拼接期望的分段作为输入 切分结果与期望一致
+     *
+     */
+    private static void assertSplit(int sectionChars, String... expected) {
+        List<String> sections = ArticleSectionUtil.split(String.join("", expected), sectionChars);
+        assertEquals(Arrays.asList(expected), sections);
+    }
+}